@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * The {@code BitmapIndex} class associates each word of a {@link WordMap} with the set of files containing it,
+ * stored as a {@link DocumentBitmap} over the indices of the files in the list of file names. The sets are indexed by
+ * the rank of their word in the {@link CorpusVocabulary} of the corpus.
+ * <p>
+ * It is used to evaluate boolean queries, so that only the files matching a query are scored.
+ */
+public class BitmapIndex {
+    /**
+     * CorpusVocabulary identifying the words of the WordMap by their rank.
+     */
+    private final CorpusVocabulary vocabulary;
+    /**
+     * Set of files containing the word of each rank.
+     */
+    private final DocumentBitmap[] wordFiles;
+    /**
+     * Set containing every file.
+     */
+    private final DocumentBitmap allFiles;
+
+    /**
+     * Constructs a BitmapIndex over the words of the given WordMap.
+     *
+     * @param wordMap    the WordMap containing word associations with FileMaps
+     * @param vocabulary the CorpusVocabulary identifying the words of the WordMap
+     * @param fileNames  the list of file names corresponding to the processed files
+     */
+    public BitmapIndex(WordMap wordMap, CorpusVocabulary vocabulary, ArrayList<String> fileNames) {
+        this.vocabulary = vocabulary;
+        CustomHashMap<String, Integer> fileIndices = new CustomHashMap<>(fileNames.size() * 2 + 1);
+        for (int i = 0; i < fileNames.size(); i++) {
+            fileIndices.put(fileNames.get(i), i);
+        }
+        this.allFiles = DocumentBitmap.range(fileNames.size());
+
+        this.wordFiles = new DocumentBitmap[vocabulary.size()];
+        for (Map.Entry<String, FileMap> entry : wordMap.entrySet()) {
+            DocumentBitmap files = new DocumentBitmap();
+            for (ArrayList<String> fileNamesList : entry.getValue().keySet()) {
+                for (String fileName : fileNamesList) {
+                    Integer fileIndex = fileIndices.get(fileName);
+                    if (fileIndex != null) {
+                        files.add(fileIndex);
+                    }
+                }
+            }
+            this.wordFiles[vocabulary.getRank(entry.getKey())] = files;
+        }
+    }
+
+    /**
+     * Retrieves the set of files containing a word.
+     *
+     * @param word the word
+     *
+     * @return the set of files containing the word, which is empty if the word is not in the dataset
+     */
+    public DocumentBitmap getFiles(String word) {
+        int rank = vocabulary.getRank(word);
+        return rank == -1 ? new DocumentBitmap() : wordFiles[rank];
+    }
+
+    /**
+     * Retrieves the set containing every file.
+     *
+     * @return the set of every file
+     */
+    public DocumentBitmap getAllFiles() {
+        return allFiles;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.ArrayList;
+import java.util.function.UnaryOperator;
+
+/**
+ * The {@code BooleanQuery} class parses and evaluates a boolean query over a {@link BitmapIndex}.
+ * <p>
+ * A query is made of words combined with the {@code AND}, {@code OR} and {@code NOT} operators and parentheses.
+ * {@code NOT} has the highest precedence and {@code OR} the lowest. Two words without an operator between them are
+ * combined with {@code AND}. For example, {@code war AND (peace OR treaty) NOT civil} matches the files containing
+ * "war" and either "peace" or "treaty", but not "civil". Like in a SEARCH query, words are split on non-word
+ * characters, so {@code war-peace} is read as {@code war peace}.
+ * <p>
+ * The words which are not negated are kept so that the matching files can be scored.
+ */
+public class BooleanQuery {
+    /**
+     * Operator matching the files matched by both of its operands.
+     */
+    private static final String AND = "AND";
+    /**
+     * Operator matching the files matched by either of its operands.
+     */
+    private static final String OR = "OR";
+    /**
+     * Operator matching the files not matched by its operand.
+     */
+    private static final String NOT = "NOT";
+    /**
+     * Tokens of the query.
+     */
+    private final String[] tokens;
+    /**
+     * BitmapIndex over which the query is evaluated.
+     */
+    private final BitmapIndex bitmapIndex;
+    /**
+     * Function applied to each word of the query before it is looked up.
+     */
+    private final UnaryOperator<String> wordCorrector;
+    /**
+     * Words of the query which are not negated, after correction.
+     */
+    private final ArrayList<String> scoredWords = new ArrayList<>();
+    /**
+     * Set of files matching the query.
+     */
+    private final DocumentBitmap files;
+    /**
+     * Position of the next token to parse.
+     */
+    private int position;
+    /**
+     * Number of NOT operators applied to the token being parsed.
+     */
+    private int negations;
+
+    /**
+     * Parses and evaluates a boolean query.
+     *
+     * @param query         the boolean query
+     * @param bitmapIndex   the BitmapIndex over which the query is evaluated
+     * @param wordCorrector the function applied to each word of the query before it is looked up
+     *
+     * @throws RuntimeException if the query is not valid
+     */
+    public BooleanQuery(String query, BitmapIndex bitmapIndex, UnaryOperator<String> wordCorrector) {
+        this.tokens = query.replace("(", " ( ").replace(")", " ) ").replaceAll("[^\\w()]+", " ").trim().split(" ");
+        this.bitmapIndex = bitmapIndex;
+        this.wordCorrector = wordCorrector;
+
+        this.files = parseOr();
+        if (position != tokens.length) {
+            throw new RuntimeException("Invalid query format: " + query);
+        }
+    }
+
+    /**
+     * Parses a sequence of operands separated by OR.
+     *
+     * @return the set of files matching the sequence
+     */
+    private DocumentBitmap parseOr() {
+        DocumentBitmap result = parseAnd();
+        while (accept(OR)) {
+            result = result.or(parseAnd());
+        }
+        return result;
+    }
+
+    /**
+     * Parses a sequence of operands separated by AND or by nothing.
+     *
+     * @return the set of files matching the sequence
+     */
+    private DocumentBitmap parseAnd() {
+        DocumentBitmap result = parseNot();
+        while (position < tokens.length && !tokens[position].equals(OR) && !tokens[position].equals(")")) {
+            accept(AND);
+            result = result.and(parseNot());
+        }
+        return result;
+    }
+
+    /**
+     * Parses an operand, which is a word, a query in parentheses or a negated operand.
+     *
+     * @return the set of files matching the operand
+     */
+    private DocumentBitmap parseNot() {
+        if (position == tokens.length) {
+            throw new RuntimeException("Invalid query format: missing operand");
+        }
+
+        if (accept(NOT)) {
+            negations++;
+            DocumentBitmap operand = parseNot();
+            negations--;
+            return bitmapIndex.getAllFiles().andNot(operand);
+        }
+
+        if (accept("(")) {
+            DocumentBitmap result = parseOr();
+            if (!accept(")")) {
+                throw new RuntimeException("Invalid query format: missing closing parenthesis");
+            }
+            return result;
+        }
+
+        // An operator where an operand is expected would otherwise be corrected into a word
+        String word = tokens[position++];
+        if (word.equals(AND) || word.equals(OR) || !word.matches("\\w+")) {
+            throw new RuntimeException("Invalid query format: " + word);
+        }
+        word = wordCorrector.apply(word);
+        if (negations % 2 == 0) {
+            scoredWords.add(word);
+        }
+        return bitmapIndex.getFiles(word);
+    }
+
+    /**
+     * Skips the next token if it is the expected one.
+     *
+     * @param token the expected token
+     *
+     * @return true if the token was skipped, false otherwise
+     */
+    private boolean accept(String token) {
+        if (position < tokens.length && tokens[position].equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the set of files matching the query.
+     *
+     * @return the set of files matching the query
+     */
+    public DocumentBitmap getFiles() {
+        return files;
+    }
+
+    /**
+     * Retrieves the words of the query which are not negated, after correction.
+     *
+     * @return the list of words used to score the matching files
+     */
+    public ArrayList<String> getScoredWords() {
+        return scoredWords;
+    }
+}
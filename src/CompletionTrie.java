@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The {@code CompletionTrie} class is a path-compressed trie built over the keys of a {@link WordMap}.
+ * Every node stores the k most frequent words of its subtree, so a prefix query only has to walk the
+ * prefix and read the precomputed list, which takes a time proportional to the length of the prefix plus k.
+ * <p>
+ * When the processed files are provided, the most probable next word of each word is also precomputed
+ * so that it can be returned alongside the completions.
+ */
+public class CompletionTrie {
+    /**
+     * Default number of completions returned for a prefix.
+     */
+    public static final int DEFAULT_COMPLETION_COUNT = 5;
+    /**
+     * Orders words by decreasing frequency. If two words have the same frequency, the word that comes first in
+     * lexicographic order is chosen.
+     */
+    private static final Comparator<Node> FREQUENCY_ORDER = Comparator.comparingInt((Node node) -> -node.frequency).thenComparing(node -> node.word);
+    /**
+     * Root of the trie, associated to the empty prefix.
+     */
+    private final Node root = new Node("");
+    /**
+     * Maximum number of completions stored at each node.
+     */
+    private final int completionCount;
+
+    /**
+     * Constructs a CompletionTrie over the words of the given WordMap.
+     *
+     * @param wordMap         the WordMap containing word associations with FileMaps
+     * @param processedFiles  the list of processed files used to precompute the most probable next word of each
+     *                        word, or null to skip this step
+     * @param completionCount the maximum number of completions returned for a prefix
+     */
+    public CompletionTrie(WordMap wordMap, ArrayList<String[]> processedFiles, int completionCount) {
+        if (completionCount <= 0) {
+            throw new RuntimeException("Completion count must be positive");
+        }
+        this.completionCount = completionCount;
+
+        CustomHashMap<String, String> nextWords = processedFiles == null ? new CustomHashMap<>() : getNextWords(processedFiles);
+
+        // Insert every word with its total number of occurrences in the dataset
+        for (Map.Entry<String, FileMap> entry : wordMap.entrySet()) {
+            int frequency = 0;
+            for (ArrayList<ArrayList<Integer>> positionsList : entry.getValue().values()) {
+                for (ArrayList<Integer> positions : positionsList) {
+                    frequency += positions.size();
+                }
+            }
+            insert(entry.getKey(), frequency, nextWords.get(entry.getKey()));
+        }
+
+        compress(root);
+        computeCompletions(root);
+    }
+
+    /**
+     * Computes the most probable next word of every word of the processed files.
+     *
+     * @param processedFiles the list of processed files containing cleaned and lemmatized content
+     *
+     * @return a CustomHashMap associating each word with its most probable next word
+     */
+    private static CustomHashMap<String, String> getNextWords(ArrayList<String[]> processedFiles) {
+        CustomHashMap<String, CustomHashMap<String, Integer>> successors = new CustomHashMap<>();
+        for (String[] fileContent : processedFiles) {
+            for (int i = 0; i < fileContent.length - 1; i++) {
+                CustomHashMap<String, Integer> bigrams = successors.get(fileContent[i]);
+                if (bigrams == null) {
+                    bigrams = new CustomHashMap<>();
+                    successors.put(fileContent[i], bigrams);
+                }
+                bigrams.merge(fileContent[i + 1], 1, Integer::sum);
+            }
+        }
+
+        CustomHashMap<String, String> nextWords = new CustomHashMap<>(successors.size() * 2 + 1);
+        for (Map.Entry<String, CustomHashMap<String, Integer>> entry : successors.entrySet()) {
+            nextWords.put(entry.getKey(), Utils.getMostProbableBigram(entry.getValue()));
+        }
+        return nextWords;
+    }
+
+    /**
+     * Inserts a word in the trie, creating one node per character.
+     *
+     * @param word      the word to insert
+     * @param frequency the number of occurrences of the word in the dataset
+     * @param nextWord  the most probable next word of the word, or null if there is none
+     */
+    private void insert(String word, int frequency, String nextWord) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            Node child = node.getChild(word.charAt(i));
+            if (child == null) {
+                child = node.addChild(word.substring(i, i + 1));
+            }
+            node = child;
+        }
+        node.word = word;
+        node.frequency = frequency;
+        node.nextWord = nextWord;
+    }
+
+    /**
+     * Merges every chain of nodes that have a single child and no word into a single edge.
+     *
+     * @param node the root of the subtree to compress
+     */
+    private void compress(Node node) {
+        for (int i = 0; i < node.childCount; i++) {
+            Node child = node.children[i];
+            StringBuilder label = null;
+            while (child.word == null && child.childCount == 1) {
+                if (label == null) {
+                    label = new StringBuilder(child.label);
+                }
+                child = child.children[0];
+                label.append(child.label);
+            }
+            if (label != null) {
+                child.label = label.toString();
+                node.children[i] = child;
+            }
+            compress(child);
+        }
+    }
+
+    /**
+     * Computes the most frequent words of every subtree, from the leaves to the root.
+     *
+     * @param node the root of the subtree
+     */
+    private void computeCompletions(Node node) {
+        ArrayList<Node> candidates = new ArrayList<>();
+        if (node.word != null) {
+            candidates.add(node);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            computeCompletions(node.children[i]);
+            candidates.addAll(Arrays.asList(node.children[i].completions));
+        }
+
+        candidates.sort(FREQUENCY_ORDER);
+        node.completions = candidates.subList(0, Math.min(completionCount, candidates.size())).toArray(new Node[0]);
+    }
+
+    /**
+     * Retrieves the most frequent words starting with the given prefix, ordered by decreasing frequency.
+     *
+     * @param prefix the prefix of the words
+     *
+     * @return a list of entries associating each completion with its most probable next word, or null if the
+     * completion has no next word
+     */
+    public ArrayList<Map.Entry<String, String>> complete(String prefix) {
+        ArrayList<Map.Entry<String, String>> completions = new ArrayList<>(completionCount);
+
+        // Walk down the trie following the prefix
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            node = node.getChild(prefix.charAt(i));
+            if (node == null) {
+                return completions;
+            }
+
+            // The prefix may end in the middle of the edge
+            int length = Math.min(node.label.length(), prefix.length() - i);
+            if (!prefix.regionMatches(i, node.label, 0, length)) {
+                return completions;
+            }
+            i += length;
+        }
+
+        for (Node completion : node.completions) {
+            completions.add(new AbstractMap.SimpleImmutableEntry<>(completion.word, completion.nextWord));
+        }
+        return completions;
+    }
+
+    /**
+     * Gets the maximum number of completions returned for a prefix.
+     *
+     * @return the maximum number of completions
+     */
+    public int getCompletionCount() {
+        return completionCount;
+    }
+
+    /**
+     * A node of the trie. Its children are kept sorted by the first character of their label so that they can
+     * be found using a binary search.
+     */
+    private static class Node {
+        /**
+         * Characters on the edge leading to this node.
+         */
+        private String label;
+        /**
+         * First character of the label of each child, sorted.
+         */
+        private char[] firstChars = new char[0];
+        /**
+         * Children of the node, in the same order as firstChars.
+         */
+        private Node[] children = new Node[0];
+        /**
+         * Number of children of the node.
+         */
+        private int childCount;
+        /**
+         * Word ending at this node, or null if no word ends here.
+         */
+        private String word;
+        /**
+         * Number of occurrences of the word in the dataset.
+         */
+        private int frequency;
+        /**
+         * Most probable next word of the word, or null if there is none.
+         */
+        private String nextWord;
+        /**
+         * Most frequent words of the subtree, ordered by decreasing frequency.
+         */
+        private Node[] completions;
+
+        /**
+         * Constructs a Node with the given edge label.
+         *
+         * @param label the characters on the edge leading to the node
+         */
+        private Node(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Gets the child whose label starts with the given character.
+         *
+         * @param c the first character of the label
+         *
+         * @return the child, or null if there is none
+         */
+        private Node getChild(char c) {
+            int index = Arrays.binarySearch(firstChars, 0, childCount, c);
+            return index < 0 ? null : children[index];
+        }
+
+        /**
+         * Adds a child with the given label, keeping the children sorted.
+         *
+         * @param label the label of the new child
+         *
+         * @return the new child
+         */
+        private Node addChild(String label) {
+            int index = -(Arrays.binarySearch(firstChars, 0, childCount, label.charAt(0)) + 1);
+            if (childCount == children.length) {
+                int capacity = Math.max(2, childCount * 2);
+                firstChars = Arrays.copyOf(firstChars, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            System.arraycopy(firstChars, index, firstChars, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+
+            Node child = new Node(label);
+            firstChars[index] = label.charAt(0);
+            children[index] = child;
+            childCount++;
+            return child;
+        }
+    }
+}
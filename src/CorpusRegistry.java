@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The {@code CorpusRegistry} class hosts several named corpora in the same process.
+ * <p>
+ * Every corpus has its own {@link SnapshotIndex}, and thus its own processed files, WordMap and statistics, but
+ * they all share a single {@link Preprocessor} and {@link TermDictionary}. The NLP pipeline is therefore loaded
+ * once, and a word appearing in several corpora is stored once. A word leaves the TermDictionary once no snapshot
+ * of any corpus uses it. Since the Preprocessor is not thread-safe, the corpora are rebuilt one at a time on a
+ * shared builder thread, while queries are routed to the current snapshot of a corpus by its name. Each corpus is
+ * built in memory, in the same way as a standalone {@link SnapshotIndex}.
+ */
+public class CorpusRegistry implements AutoCloseable {
+    /**
+     * TermDictionary shared by every corpus.
+     */
+    private final TermDictionary termDictionary = new TermDictionary();
+    /**
+     * Preprocessor shared by every corpus. It is only used by the builder thread, and leaves some processors to the
+     * queries.
+     */
+    private final Preprocessor preprocessor = new Preprocessor(termDictionary, SnapshotIndex.BUILD_PARALLELISM);
+    /**
+     * Executor running the rebuilds of every corpus one at a time.
+     */
+    private final ExecutorService builder = SnapshotIndex.newBuilder();
+    /**
+     * SnapshotIndex of each corpus, by name.
+     */
+    private final ConcurrentHashMap<String, SnapshotIndex> corpora = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a corpus over the specified directory. The corpus must be built using the returned SnapshotIndex
+     * before it can be queried.
+     *
+     * @param name the name of the corpus
+     * @param dir  the directory path containing the text files of the corpus
+     *
+     * @return the SnapshotIndex of the corpus
+     *
+     * @throws RuntimeException if a corpus with the same name already exists
+     */
+    public SnapshotIndex addCorpus(String name, String dir) {
+        SnapshotIndex index = new SnapshotIndex(dir, preprocessor, builder);
+        if (corpora.putIfAbsent(name, index) != null) {
+            throw new RuntimeException("Corpus already exists: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Removes a corpus and closes its SnapshotIndex, so that its pending rebuilds are skipped by the builder thread.
+     * Its snapshots are reclaimed once their last reader drops them, which releases the words that no other corpus
+     * uses from the shared TermDictionary.
+     *
+     * @param name the name of the corpus
+     */
+    public void removeCorpus(String name) {
+        SnapshotIndex index = corpora.remove(name);
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    /**
+     * Gets the SnapshotIndex of a corpus.
+     *
+     * @param name the name of the corpus
+     *
+     * @return the SnapshotIndex of the corpus
+     *
+     * @throws RuntimeException if there is no corpus with this name
+     */
+    public SnapshotIndex getCorpus(String name) {
+        SnapshotIndex index = corpora.get(name);
+        if (index == null) {
+            throw new RuntimeException("Corpus not found: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Gets the current snapshot of a corpus without locking.
+     *
+     * @param name the name of the corpus
+     *
+     * @return the current snapshot of the corpus
+     *
+     * @throws RuntimeException if there is no corpus with this name or if it was not built yet
+     */
+    public IndexSnapshot getSnapshot(String name) {
+        return getCorpus(name).getSnapshot();
+    }
+
+    /**
+     * Gets the names of the hosted corpora.
+     *
+     * @return a view of the names of the corpora
+     */
+    public Set<String> getCorpusNames() {
+        return corpora.keySet();
+    }
+
+    /**
+     * Gets the TermDictionary shared by every corpus.
+     *
+     * @return the shared TermDictionary
+     */
+    public TermDictionary getTermDictionary() {
+        return termDictionary;
+    }
+
+    /**
+     * Shuts down the shared builder thread. The current snapshots stay readable.
+     */
+    @Override
+    public void close() {
+        builder.shutdown();
+    }
+}
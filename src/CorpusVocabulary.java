@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.lang.ref.Cleaner;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+
+/**
+ * The {@code CorpusVocabulary} class holds the words of one version of a corpus, identified by their global ID in a
+ * shared {@link TermDictionary}.
+ * <p>
+ * Each word also has a rank, which is its index in the lexicographic order of the words of the corpus. Only the IDs
+ * are stored, so a word costs a few integers per corpus instead of a map entry, and its characters are shared by
+ * every corpus. The vocabulary holds a reference to each of its words, which it releases once it is reclaimed by
+ * the garbage collector, so the words of a replaced or removed corpus leave the dictionary unless another corpus
+ * still uses them. Since the IDs of a vocabulary cannot be reused while it is reachable, the vocabulary of a
+ * snapshot stays valid for as long as a reader uses the snapshot. The lookups keep the vocabulary reachable until
+ * they return, so its words are not released in the middle of a query.
+ */
+public class CorpusVocabulary {
+    /**
+     * Cleaner releasing the words of the vocabularies which are no longer reachable.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+    /**
+     * TermDictionary identifying the words.
+     */
+    private final TermDictionary termDictionary;
+    /**
+     * ID of the word of each rank.
+     */
+    private final int[] termIds;
+    /**
+     * IDs of the words, in increasing order.
+     */
+    private final int[] sortedTermIds;
+    /**
+     * Rank of the word of each ID of sortedTermIds.
+     */
+    private final int[] sortedRanks;
+
+    /**
+     * Constructs a CorpusVocabulary over the specified words, acquiring a reference to each of them.
+     *
+     * @param words          the distinct words of the corpus
+     * @param termDictionary the TermDictionary identifying the words
+     */
+    public CorpusVocabulary(String[] words, TermDictionary termDictionary) {
+        this.termDictionary = termDictionary;
+
+        // Identify the words by their lexicographic rank
+        String[] sortedWords = words.clone();
+        Arrays.sort(sortedWords);
+        int[] termIds = termDictionary.acquire(sortedWords);
+        this.termIds = termIds;
+        // The action must not refer to the vocabulary, which would otherwise never be unreachable
+        CLEANER.register(this, () -> termDictionary.release(termIds));
+
+        // Pack each ID with its rank so that both are sorted by ID
+        long[] packed = new long[termIds.length];
+        for (int rank = 0; rank < termIds.length; rank++) {
+            packed[rank] = ((long) termIds[rank] << 32) | rank;
+        }
+        Arrays.sort(packed);
+        this.sortedTermIds = new int[packed.length];
+        this.sortedRanks = new int[packed.length];
+        for (int i = 0; i < packed.length; i++) {
+            this.sortedTermIds[i] = (int) (packed[i] >>> 32);
+            this.sortedRanks[i] = (int) packed[i];
+        }
+    }
+
+    /**
+     * Gets the rank of a word, without locking.
+     *
+     * @param word the word
+     *
+     * @return the rank of the word, or -1 if it is not in the corpus
+     */
+    public int getRank(String word) {
+        try {
+            int id = termDictionary.getId(word);
+            if (id == -1) {
+                return -1;
+            }
+            int index = Arrays.binarySearch(sortedTermIds, id);
+            return index < 0 ? -1 : sortedRanks[index];
+        } finally {
+            // Keep the IDs referenced until the lookup is done, even if the caller no longer uses the vocabulary
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    /**
+     * Gets the word of a rank.
+     *
+     * @param rank the rank of the word
+     *
+     * @return the word
+     */
+    public String getWord(int rank) {
+        try {
+            return termDictionary.getTerm(termIds[rank]);
+        } finally {
+            // Otherwise the Cleaner could release the ID, and it could be reused, before the word is read
+            Reference.reachabilityFence(this);
+        }
+    }
+
+    /**
+     * Gets the number of words of the corpus.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return termIds.length;
+    }
+}
@@ -108,4 +108,42 @@ public class CustomHashMap<K, V> extends AbstractMap<K, V> implements Map<K, V>
     public Set<Entry<K, V>> entrySet() {
         return hashMap.entrySet();
     }
+
+    /**
+     * Returns the value to which the specified key is mapped in the CustomHashMap.
+     * The lookup is delegated to the internal HashMap instead of iterating over the entries.
+     *
+     * @param key the key whose associated value is to be returned
+     *
+     * @return the value to which the specified key is mapped, or null if there is no mapping for the key
+     */
+    @Override
+    public V get(Object key) {
+        return hashMap.get(key);
+    }
+
+    /**
+     * Checks if the CustomHashMap contains a mapping for the specified key.
+     * The lookup is delegated to the internal HashMap instead of iterating over the entries.
+     *
+     * @param key the key whose presence is to be tested
+     *
+     * @return true if the CustomHashMap contains a mapping for the specified key, false otherwise
+     */
+    @Override
+    public boolean containsKey(Object key) {
+        return hashMap.containsKey(key);
+    }
+
+    /**
+     * Removes the mapping for the specified key from the CustomHashMap if it is present.
+     *
+     * @param key the key whose mapping is to be removed
+     *
+     * @return the previous value associated with the specified key, or null if there was no mapping for the key
+     */
+    @Override
+    public V remove(Object key) {
+        return hashMap.remove(key);
+    }
 }
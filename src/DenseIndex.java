@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * The {@code DenseIndex} class answers SEARCH and BIGRAM queries using arrays indexed by file or word instead of
+ * maps of boxed values, so that the scores can be accumulated and compared by {@link DenseScorer}.
+ * <p>
+ * Each word is identified by its rank in the {@link CorpusVocabulary} of the corpus, which is its index in
+ * lexicographic order, and each file by its index in the list of file names. Words are looked up through their
+ * global ID, so the index does not keep a dictionary of its own. The lexicographic rank of every file is
+ * precomputed, so ties are broken without comparing strings. The postings of each word are stored as the sorted
+ * indices of the files containing it, so the score of a given file is found without going through every file
+ * containing the word. The results are the same as the ones of
+ * {@link Utils#getMostRelevantFile(CustomHashMap)} and {@link Utils#getMostProbableBigram(CustomHashMap)}.
+ */
+public class DenseIndex {
+    /**
+     * WordMap containing word associations with FileMaps.
+     */
+    private final WordMap wordMap;
+    /**
+     * List of file names corresponding to the processed files.
+     */
+    private final ArrayList<String> fileNames;
+    /**
+     * CorpusVocabulary identifying the words of the WordMap by their rank.
+     */
+    private final CorpusVocabulary vocabulary;
+    /**
+     * Content of each processed file, where each word is replaced by its rank, or -1 for an empty word.
+     */
+    private final int[][] fileWordIds;
+    /**
+     * Index of each file in the list of file names.
+     */
+    private final CustomHashMap<String, Integer> fileIndices;
+    /**
+     * Indices of the files containing each word, in increasing order.
+     */
+    private final int[][] postingFiles;
+    /**
+     * Number of occurrences of each word in each file of its postings.
+     */
+    private final int[][] postingCounts;
+    /**
+     * Number of words of each file.
+     */
+    private final double[] fileLengths;
+    /**
+     * Rank of each file name in lexicographic order.
+     */
+    private final double[] fileRanks;
+    /**
+     * Index of the file of each rank.
+     */
+    private final int[] filesByRank;
+
+    /**
+     * Constructs a DenseIndex over the specified WordMap and processed files.
+     *
+     * @param wordMap        the WordMap containing word associations with FileMaps
+     * @param vocabulary     the CorpusVocabulary identifying the words of the WordMap
+     * @param processedFiles the list of processed files containing cleaned and lemmatized content
+     * @param fileNames      the list of file names corresponding to the processed files
+     */
+    public DenseIndex(WordMap wordMap, CorpusVocabulary vocabulary, ArrayList<String[]> processedFiles, ArrayList<String> fileNames) {
+        this.wordMap = wordMap;
+        this.vocabulary = vocabulary;
+        this.fileNames = fileNames;
+
+        int fileCount = processedFiles.size();
+        this.fileWordIds = new int[fileCount][];
+        this.fileLengths = new double[fileCount];
+        this.fileIndices = new CustomHashMap<>(fileCount * 2 + 1);
+        for (int i = 0; i < fileCount; i++) {
+            String[] fileContent = processedFiles.get(i);
+            this.fileWordIds[i] = new int[fileContent.length];
+            for (int j = 0; j < fileContent.length; j++) {
+                this.fileWordIds[i][j] = this.vocabulary.getRank(fileContent[j]);
+            }
+            this.fileLengths[i] = fileContent.length;
+            this.fileIndices.put(fileNames.get(i), i);
+        }
+
+        // Store the postings of each word sorted by file index, packing each file index with its count
+        this.postingFiles = new int[vocabulary.size()][];
+        this.postingCounts = new int[vocabulary.size()][];
+        for (Map.Entry<String, FileMap> entry : wordMap.entrySet()) {
+            int wordId = vocabulary.getRank(entry.getKey());
+            ArrayList<Long> postings = new ArrayList<>();
+            for (Map.Entry<ArrayList<String>, ArrayList<ArrayList<Integer>>> fileMapEntry : entry.getValue().entrySet()) {
+                ArrayList<String> fileNamesList = fileMapEntry.getKey();
+                ArrayList<ArrayList<Integer>> positionsList = fileMapEntry.getValue();
+                for (int i = 0; i < fileNamesList.size(); i++) {
+                    Integer fileIndex = this.fileIndices.get(fileNamesList.get(i));
+                    if (fileIndex != null) {
+                        postings.add(((long) fileIndex << 32) | positionsList.get(i).size());
+                    }
+                }
+            }
+            postings.sort(null);
+
+            this.postingFiles[wordId] = new int[postings.size()];
+            this.postingCounts[wordId] = new int[postings.size()];
+            for (int i = 0; i < postings.size(); i++) {
+                this.postingFiles[wordId][i] = (int) (postings.get(i) >>> 32);
+                this.postingCounts[wordId][i] = (int) (long) postings.get(i);
+            }
+        }
+
+        // Rank the files by their name
+        Integer[] sortedFiles = new Integer[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            sortedFiles[i] = i;
+        }
+        Arrays.sort(sortedFiles, Comparator.comparing(fileNames::get));
+        this.fileRanks = new double[fileCount];
+        this.filesByRank = new int[fileCount];
+        for (int rank = 0; rank < fileCount; rank++) {
+            this.fileRanks[sortedFiles[rank]] = rank;
+            this.filesByRank[rank] = sortedFiles[rank];
+        }
+    }
+
+    /**
+     * Retrieves the most relevant file for the given words, based on the sum of their TF-IDF scores.
+     *
+     * @param queryWords the words of the query
+     *
+     * @return the most relevant file. If two files have the same score, the file with the name that comes first
+     * in lexicographic order is chosen
+     *
+     * @throws RuntimeException if a word is not in the dataset or if no file contains the words
+     */
+    public String getMostRelevantFile(String[] queryWords) {
+        return getMostRelevantFile(queryWords, null);
+    }
+
+    /**
+     * Retrieves the most relevant file among the candidates for the given words, based on the sum of their TF-IDF
+     * scores.
+     * <p>
+     * Without candidates, the scores of every file are accumulated in dense arrays by {@link DenseScorer}, and
+     * only the files containing a word can be chosen. With candidates, only the candidates are scored, each by
+     * looking it up in the postings of every word, so the cost depends on the number of candidates instead of
+     * the number of files containing the words. Any candidate can then be chosen, even one containing none of
+     * the words.
+     *
+     * @param queryWords the words of the query
+     * @param candidates the indices of the files which can be chosen, or null to choose among every file
+     *
+     * @return the most relevant file. If two files have the same score, the file with the name that comes first
+     * in lexicographic order is chosen
+     *
+     * @throws RuntimeException if there are no words, if a word is not in the dataset or if there is no file to
+     *                          choose
+     */
+    public String getMostRelevantFile(String[] queryWords, DocumentBitmap candidates) {
+        // Without words, every candidate would have a score of 0 and the first one by name would be chosen
+        if (queryWords.length == 0) {
+            throw new RuntimeException("No scored words in query");
+        }
+
+        int[] files = candidates == null ? null : candidates.toArray();
+        double[] scores = new double[files == null ? fileLengths.length : files.length];
+        double[] occurrences = files == null ? new double[fileLengths.length] : null;
+
+        for (String word : queryWords) {
+            // If the word is not in the wordMap, throw an exception
+            int wordId = vocabulary.getRank(word);
+            if (wordId == -1) {
+                throw new RuntimeException("Word not found in dataset: " + word);
+            }
+
+            // Get the file frequency of the word, like Utils.getTFIDFs does
+            int fileFrequency = wordMap.get(word).keySet().size();
+            double idf = 1 + Math.log((1.0 + fileLengths.length) / (1.0 + fileFrequency));
+
+            int[] wordFiles = postingFiles[wordId];
+            int[] wordCounts = postingCounts[wordId];
+            if (files == null) {
+                // Scatter the number of occurrences of the word in each file. A file which does not contain the
+                // word gets a score of 0, which leaves its total unchanged.
+                Arrays.fill(occurrences, 0.0);
+                for (int i = 0; i < wordFiles.length; i++) {
+                    occurrences[wordFiles[i]] = wordCounts[i];
+                }
+                DenseScorer.accumulate(scores, occurrences, fileLengths, idf);
+            } else {
+                // Only score the candidates containing the word
+                for (int i = 0; i < files.length; i++) {
+                    int posting = Arrays.binarySearch(wordFiles, files[i]);
+                    if (posting >= 0) {
+                        scores[i] += wordCounts[posting] / fileLengths[files[i]] * idf;
+                    }
+                }
+            }
+        }
+
+        if (files == null) {
+            // Every file containing a word has a positive score
+            double rank = DenseScorer.argmaxRank(scores, fileRanks);
+            if (rank == Double.POSITIVE_INFINITY || scores[filesByRank[(int) rank]] <= 0.0) {
+                throw new RuntimeException("Scores cannot is empty");
+            }
+            return fileNames.get(filesByRank[(int) rank]);
+        }
+
+        // Choose the candidate with the highest score and, among those, the smallest rank
+        int best = -1;
+        for (int i = 0; i < files.length; i++) {
+            if (best == -1 || scores[i] > scores[best] || (scores[i] == scores[best] && fileRanks[files[i]] < fileRanks[files[best]])) {
+                best = i;
+            }
+        }
+        if (best == -1) {
+            throw new RuntimeException("Scores cannot is empty");
+        }
+        return fileNames.get(files[best]);
+    }
+
+    /**
+     * Retrieves the most probable word following the given word.
+     *
+     * @param word the word
+     *
+     * @return the most probable next word. If two words have the same probability, the word that comes first in
+     * lexicographic order is chosen
+     *
+     * @throws RuntimeException if the word is not in the dataset or if it is never followed by another word
+     */
+    public String getMostProbableBigram(String word) {
+        // If the word is not in the wordMap, throw an exception
+        FileMap fileMap = wordMap.get(word);
+        if (fileMap == null) {
+            throw new RuntimeException("Word not found in dataset: " + word);
+        }
+
+        // Count the occurrences of each next word. Since the probability of a next word is its number of
+        // occurrences divided by the same total, the most probable word is the one with the most occurrences.
+        int[] counts = new int[vocabulary.size()];
+        for (Map.Entry<ArrayList<String>, ArrayList<ArrayList<Integer>>> fileMapEntry : fileMap.entrySet()) {
+            ArrayList<String> fileNamesList = fileMapEntry.getKey();
+            ArrayList<ArrayList<Integer>> positionsList = fileMapEntry.getValue();
+            for (int i = 0; i < fileNamesList.size(); i++) {
+                Integer fileIndex = fileIndices.get(fileNamesList.get(i));
+                if (fileIndex == null) {
+                    continue;
+                }
+
+                int[] fileContent = fileWordIds[fileIndex];
+                for (int position : positionsList.get(i)) {
+                    // If the word is not the last word in the file, count the next word
+                    if (position < fileContent.length - 1 && fileContent[position + 1] != -1) {
+                        counts[fileContent[position + 1]]++;
+                    }
+                }
+            }
+        }
+
+        // Words are identified by their lexicographic rank, so the first word with the most occurrences wins ties
+        int nextWord = DenseScorer.argmax(counts);
+        if (nextWord == -1 || counts[nextWord] == 0) {
+            throw new RuntimeException("No bigrams found for word: " + word);
+        }
+        return vocabulary.getWord(nextWord);
+    }
+}
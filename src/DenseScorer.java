@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+
+
+/**
+ * The {@code DenseScorer} class provides the operations used to score files and bigrams stored in dense arrays.
+ * <p>
+ * When the {@code jdk.incubator.vector} module is available (with {@code --add-modules jdk.incubator.vector}),
+ * the operations are delegated to {@link VectorKernels}, which uses SIMD instructions. Otherwise, a scalar
+ * implementation giving exactly the same results is used.
+ */
+public class DenseScorer {
+    /**
+     * Whether the operations are delegated to VectorKernels.
+     */
+    private static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    /**
+     * Checks whether the operations use the JDK Vector API.
+     *
+     * @return true if the operations are vectorized, false if the scalar implementation is used
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Adds the TF-IDF score of a word in each file to the accumulated scores, computing
+     * {@code scores[i] += occurrences[i] / lengths[i] * idf} for every file i.
+     *
+     * @param scores      the accumulated scores of the files
+     * @param occurrences the number of occurrences of the word in each file
+     * @param lengths     the number of words of each file
+     * @param idf         the inverse document frequency of the word
+     */
+    public static void accumulate(double[] scores, double[] occurrences, double[] lengths, double idf) {
+        if (VECTORIZED) {
+            VectorKernels.accumulate(scores, occurrences, lengths, idf);
+            return;
+        }
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] += occurrences[i] / lengths[i] * idf;
+        }
+    }
+
+    /**
+     * Finds the smallest rank among the elements holding the highest value. This is used to break ties using a
+     * precomputed lexicographic rank instead of comparing strings.
+     *
+     * @param values the values
+     * @param ranks  the rank of each element
+     *
+     * @return the smallest rank among the elements holding the highest value, or positive infinity if there are
+     * no values
+     */
+    public static double argmaxRank(double[] values, double[] ranks) {
+        if (VECTORIZED) {
+            return VectorKernels.argmaxRank(values, ranks);
+        }
+        double max = Double.NEGATIVE_INFINITY;
+        double minRank = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > max || (values[i] == max && ranks[i] < minRank)) {
+                max = values[i];
+                minRank = ranks[i];
+            }
+        }
+        return minRank;
+    }
+
+    /**
+     * Finds the first element holding the highest value.
+     *
+     * @param values the values
+     *
+     * @return the index of the first element holding the highest value, or -1 if there are no values
+     */
+    public static int argmax(int[] values) {
+        if (VECTORIZED) {
+            return VectorKernels.argmax(values);
+        }
+        int index = -1;
+        for (int i = 0; i < values.length; i++) {
+            if (index == -1 || values[i] > values[index]) {
+                index = i;
+            }
+        }
+        return index;
+    }
+}
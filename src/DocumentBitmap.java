@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.Arrays;
+
+/**
+ * The {@code DocumentBitmap} class is a compressed set of file indices, organized like a Roaring bitmap.
+ * <p>
+ * The indices are grouped by their 16 high bits. Each group is stored in a container holding the 16 low bits of
+ * its indices: a sorted array when the group is sparse, or a bitmap of 2^16 bits when it holds more than
+ * {@value #ARRAY_CONTAINER_LIMIT} indices. Intersections, unions and differences are computed container by
+ * container and never expand the sets to a list of indices.
+ * <p>
+ * The operations return new bitmaps and never modify their operands. Indices can only be added while a set is
+ * built, since the sets of an {@link IndexSnapshot} are shared by every reader.
+ */
+public class DocumentBitmap {
+    /**
+     * Maximum number of indices stored in an array container. Above this limit, a bitmap container uses less
+     * memory.
+     */
+    private static final int ARRAY_CONTAINER_LIMIT = 4096;
+    /**
+     * Number of longs in a bitmap container.
+     */
+    private static final int BITMAP_WORDS = 1024;
+    /**
+     * Sorted 16 high bits of the indices of each container.
+     */
+    private char[] keys;
+    /**
+     * Containers, in the same order as the keys.
+     */
+    private Container[] containers;
+    /**
+     * Number of containers.
+     */
+    private int size;
+
+    /**
+     * Constructs an empty DocumentBitmap.
+     */
+    public DocumentBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    /**
+     * Constructs a DocumentBitmap with the specified containers.
+     *
+     * @param keys       the sorted 16 high bits of the indices of each container
+     * @param containers the containers
+     * @param size       the number of containers
+     */
+    private DocumentBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Constructs a DocumentBitmap containing every index from 0 to count - 1.
+     *
+     * @param count the number of indices
+     *
+     * @return the DocumentBitmap containing the indices
+     */
+    public static DocumentBitmap range(int count) {
+        DocumentBitmap bitmap = new DocumentBitmap();
+        for (int i = 0; i < count; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds an index to the set. This is only used while the set is built.
+     *
+     * @param index the non-negative index to add
+     */
+    void add(int index) {
+        char key = (char) (index >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) index);
+            return;
+        }
+
+        i = -(i + 1);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = new ArrayContainer(new char[]{(char) index}, 1);
+        size++;
+    }
+
+    /**
+     * Checks whether an index is in the set.
+     *
+     * @param index the index to check
+     *
+     * @return true if the index is in the set, false otherwise
+     */
+    public boolean contains(int index) {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (index >>> 16));
+        return i >= 0 && containers[i].contains((char) index);
+    }
+
+    /**
+     * Gets the number of indices in the set.
+     *
+     * @return the number of indices
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return true if the set contains no index, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the indices in the set, in increasing order.
+     *
+     * @return an array of the indices
+     */
+    public int[] toArray() {
+        int[] indices = new int[cardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].copyTo(indices, offset, keys[i] << 16);
+        }
+        return indices;
+    }
+
+    /**
+     * Computes the intersection of this set and another one.
+     *
+     * @param other the other set
+     *
+     * @return a new DocumentBitmap containing the indices in both sets
+     */
+    public DocumentBitmap and(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap(new char[Math.max(1, Math.min(size, other.size))], new Container[Math.max(1, Math.min(size, other.size))], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the union of this set and another one.
+     *
+     * @param other the other set
+     *
+     * @return a new DocumentBitmap containing the indices in either set
+     */
+    public DocumentBitmap or(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap(new char[Math.max(1, size + other.size)], new Container[Math.max(1, size + other.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the difference of this set and another one.
+     *
+     * @param other the other set
+     *
+     * @return a new DocumentBitmap containing the indices in this set which are not in the other set
+     */
+    public DocumentBitmap andNot(DocumentBitmap other) {
+        DocumentBitmap result = new DocumentBitmap(new char[Math.max(1, size)], new Container[Math.max(1, size)], 0);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                result.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Appends a container after the last one, skipping it if it is empty.
+     *
+     * @param key       the 16 high bits of the indices of the container, greater than the last key
+     * @param container the container to append
+     */
+    private void append(char key, Container container) {
+        if (container.cardinality() == 0) {
+            return;
+        }
+        keys[size] = key;
+        containers[size] = container;
+        size++;
+    }
+
+    /**
+     * Set of the 16 low bits of the indices of a group.
+     */
+    private static abstract class Container {
+        /**
+         * Adds a value to the container.
+         *
+         * @param value the value to add
+         *
+         * @return the container holding the value, which may be a new one
+         */
+        abstract Container add(char value);
+
+        /**
+         * Checks whether a value is in the container.
+         *
+         * @param value the value to check
+         *
+         * @return true if the value is in the container, false otherwise
+         */
+        abstract boolean contains(char value);
+
+        /**
+         * Copies the container so that the copy can be modified independently.
+         *
+         * @return a copy of the container
+         */
+        abstract Container copy();
+
+        /**
+         * Gets the number of values in the container.
+         *
+         * @return the number of values
+         */
+        abstract int cardinality();
+
+        /**
+         * Copies the values of the container, in increasing order, combined with the given high bits.
+         *
+         * @param indices  the array to which the indices are copied
+         * @param offset   the position of the first copied index
+         * @param highBits the high bits of the indices
+         *
+         * @return the position following the last copied index
+         */
+        abstract int copyTo(int[] indices, int offset, int highBits);
+
+        /**
+         * Computes the intersection of this container and another one.
+         *
+         * @param other the other container
+         *
+         * @return a container holding the values in both containers
+         */
+        abstract Container and(Container other);
+
+        /**
+         * Computes the union of this container and another one.
+         *
+         * @param other the other container
+         *
+         * @return a container holding the values in either container
+         */
+        abstract Container or(Container other);
+
+        /**
+         * Computes the difference of this container and another one.
+         *
+         * @param other the other container
+         *
+         * @return a container holding the values in this container which are not in the other one
+         */
+        abstract Container andNot(Container other);
+    }
+
+    /**
+     * Container storing its values in a sorted array.
+     */
+    private static class ArrayContainer extends Container {
+        /**
+         * Sorted values of the container.
+         */
+        private char[] values;
+        /**
+         * Number of values in the container.
+         */
+        private int cardinality;
+
+        /**
+         * Constructs an ArrayContainer with the specified values.
+         *
+         * @param values      the sorted values
+         * @param cardinality the number of values
+         */
+        private ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = Arrays.binarySearch(values, 0, cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_CONTAINER_LIMIT) {
+                return toBitmapContainer().add(value);
+            }
+
+            i = -(i + 1);
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_CONTAINER_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int copyTo(int[] indices, int offset, int highBits) {
+            for (int i = 0; i < cardinality; i++) {
+                indices[offset++] = highBits | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                // Merge the two sorted arrays
+                int j = 0;
+                for (int i = 0; i < cardinality && j < array.cardinality; ) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer array)) {
+                return other.or(this);
+            }
+
+            // Merge the two sorted arrays
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+
+            ArrayContainer container = new ArrayContainer(result, count);
+            return count > ARRAY_CONTAINER_LIMIT ? container.toBitmapContainer() : container;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        /**
+         * Converts the container to a bitmap container.
+         *
+         * @return a bitmap container holding the same values
+         */
+        private BitmapContainer toBitmapContainer() {
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * Container storing its values in a bitmap of 2^16 bits.
+     */
+    private static class BitmapContainer extends Container {
+        /**
+         * Bits of the values of the container.
+         */
+        private final long[] words;
+        /**
+         * Number of values in the container.
+         */
+        private int cardinality;
+
+        /**
+         * Constructs a BitmapContainer with the specified bits.
+         *
+         * @param words       the bits of the values
+         * @param cardinality the number of values
+         */
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Constructs a container from the specified bits, using an array container if there are few values.
+         *
+         * @param words the bits of the values
+         *
+         * @return a container holding the values
+         */
+        private static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_CONTAINER_LIMIT) {
+                return new BitmapContainer(words, cardinality);
+            }
+
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int copyTo(int[] indices, int offset, int highBits) {
+            for (int i = 0; i < words.length; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    indices[offset++] = highBits | ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (!(other instanceof BitmapContainer bitmap)) {
+                return other.and(this);
+            }
+            long[] result = new long[BITMAP_WORDS];
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+            }
+            return of(result);
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof BitmapContainer bitmap) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] |= bitmap.words[i];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            }
+            return of(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = words.clone();
+            if (other instanceof BitmapContainer bitmap) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] &= ~bitmap.words[i];
+                }
+            } else {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            }
+            return of(result);
+        }
+    }
+}
@@ -10,6 +10,10 @@ import java.util.ArrayList;
  * <p>
  * The class inherits the functionalities of {@link CustomHashMap} and serves as a convenient container for organizing and
  * managing information about file names and their associated positions in the context of a larger dataset.
+ * <p>
+ * The keys are found by their hash code, so a list of file names which is modified after it is put in the map,
+ * as the WordMap does when it adds a file to a word, can no longer be found with {@code get}, {@code containsKey}
+ * or {@code remove}. Such a map must be read through its {@code entrySet}.
  */
 public class FileMap extends CustomHashMap<ArrayList<String>, ArrayList<ArrayList<Integer>>> {
     /**
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code IndexSnapshot} class groups everything built by the {@link Preprocessor} for one version of a
+ * dataset: the processed files, the file names, the WordMap, the vocabulary and the structures built over it.
+ * <p>
+ * A snapshot is never modified once it has been created, so it can be read by any number of threads without
+ * locking. The Preprocessor builds new structures every time it processes a directory instead of updating the
+ * ones of a previous snapshot. The getters return unmodifiable views of the WordMap and of the lists, and the
+ * structures built over them cannot be modified. The arrays of words of the processed files and the FileMaps of
+ * the WordMap must still not be modified by the callers.
+ */
+public class IndexSnapshot {
+    /**
+     * Version of the snapshot, which increases every time the dataset is processed.
+     */
+    private final long version;
+    /**
+     * WordMap associating each word with a FileMap containing file names and positions.
+     */
+    private final Map<String, FileMap> wordMap;
+    /**
+     * List of processed files containing lemmatized and cleaned content.
+     */
+    private final List<String[]> processedFiles;
+    /**
+     * List of file names corresponding to the processed files.
+     */
+    private final List<String> fileNames;
+    /**
+     * CorpusVocabulary identifying the words of the WordMap in the TermDictionary.
+     */
+    private final CorpusVocabulary vocabulary;
+    /**
+     * CompletionTrie built over the words of the WordMap.
+     */
+    private final CompletionTrie completionTrie;
+    /**
+     * BitmapIndex associating each word with the set of files containing it.
+     */
+    private final BitmapIndex bitmapIndex;
+    /**
+     * DenseIndex used to score files and bigrams in dense arrays.
+     */
+    private final DenseIndex denseIndex;
+
+    /**
+     * Constructs an IndexSnapshot with the specified structures.
+     *
+     * @param version        the version of the snapshot
+     * @param wordMap        the WordMap containing word associations with FileMaps
+     * @param processedFiles the list of processed files containing cleaned and lemmatized content
+     * @param fileNames      the list of file names corresponding to the processed files
+     * @param vocabulary     the CorpusVocabulary identifying the words of the WordMap
+     * @param completionTrie the CompletionTrie built over the words of the WordMap
+     * @param bitmapIndex    the BitmapIndex associating each word with the set of files containing it
+     * @param denseIndex     the DenseIndex used to score files and bigrams in dense arrays
+     */
+    public IndexSnapshot(long version, WordMap wordMap, ArrayList<String[]> processedFiles, ArrayList<String> fileNames, CorpusVocabulary vocabulary, CompletionTrie completionTrie, BitmapIndex bitmapIndex, DenseIndex denseIndex) {
+        this.version = version;
+        this.wordMap = Collections.unmodifiableMap(wordMap);
+        this.processedFiles = Collections.unmodifiableList(processedFiles);
+        this.fileNames = Collections.unmodifiableList(fileNames);
+        this.vocabulary = vocabulary;
+        this.completionTrie = completionTrie;
+        this.bitmapIndex = bitmapIndex;
+        this.denseIndex = denseIndex;
+    }
+
+    /**
+     * Gets the version of the snapshot.
+     *
+     * @return the version of the snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the WordMap of the snapshot.
+     *
+     * @return an unmodifiable view of the WordMap associating each word with a FileMap containing file names and
+     * positions
+     */
+    public Map<String, FileMap> getWordMap() {
+        return wordMap;
+    }
+
+    /**
+     * Gets the list of processed files of the snapshot.
+     *
+     * @return an unmodifiable view of the list of processed files containing cleaned and lemmatized content
+     */
+    public List<String[]> getProcessedFiles() {
+        return processedFiles;
+    }
+
+    /**
+     * Gets the list of file names of the snapshot.
+     *
+     * @return an unmodifiable view of the list of file names corresponding to the processed files
+     */
+    public List<String> getFileNames() {
+        return fileNames;
+    }
+
+    /**
+     * Gets the CorpusVocabulary of the snapshot.
+     *
+     * @return the CorpusVocabulary identifying the words of the WordMap
+     */
+    public CorpusVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Gets the CompletionTrie of the snapshot.
+     *
+     * @return the CompletionTrie built over the words of the WordMap
+     */
+    public CompletionTrie getCompletionTrie() {
+        return completionTrie;
+    }
+
+    /**
+     * Gets the BitmapIndex of the snapshot.
+     *
+     * @return the BitmapIndex associating each word with the set of files containing it
+     */
+    public BitmapIndex getBitmapIndex() {
+        return bitmapIndex;
+    }
+
+    /**
+     * Gets the DenseIndex of the snapshot.
+     *
+     * @return the DenseIndex used to score files and bigrams in dense arrays
+     */
+    public DenseIndex getDenseIndex() {
+        return denseIndex;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code LatencyHistogram} class records latencies in nanoseconds into log-linear buckets, in the same way as
+ * HdrHistogram does, so that any percentile can be read back with a bounded relative error.
+ * <p>
+ * Values are grouped by their highest set bit, and each group is split into {@code 2^(SUB_BUCKET_BITS - 1)}
+ * linear sub-buckets, so every recorded value is known within about 0.1%. Values can be recorded by several
+ * threads at the same time without locking.
+ */
+public class LatencyHistogram {
+    /**
+     * Number of bits of each value which are kept, giving a precision of about 3 significant digits.
+     */
+    private static final int SUB_BUCKET_BITS = 11;
+    /**
+     * Number of sub-buckets used for the values which are smaller than {@code 2^SUB_BUCKET_BITS}.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * Number of sub-buckets of each following group of values sharing the same highest set bit.
+     */
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+    /**
+     * Highest latency which can be recorded, one hour. Higher latencies are recorded as this value.
+     */
+    private static final long MAX_VALUE = 3_600_000_000_000L;
+    /**
+     * Number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts;
+    /**
+     * Total number of values recorded.
+     */
+    private final AtomicLong totalCount;
+    /**
+     * Sum of the values recorded.
+     */
+    private final AtomicLong totalValue;
+    /**
+     * Highest value recorded.
+     */
+    private final AtomicLong maxValue;
+
+    /**
+     * Constructs an empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(getBucketIndex(MAX_VALUE) + 1);
+        this.totalCount = new AtomicLong();
+        this.totalValue = new AtomicLong();
+        this.maxValue = new AtomicLong();
+    }
+
+    /**
+     * Gets the index of the bucket holding the given value.
+     *
+     * @param value the value, between 0 and MAX_VALUE
+     *
+     * @return the index of the bucket holding the value
+     */
+    private static int getBucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // Keep the SUB_BUCKET_BITS highest bits of the value
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the highest value held by the bucket at the given index.
+     *
+     * @param index the index of the bucket
+     *
+     * @return the highest value held by the bucket
+     */
+    private static long getHighestValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long lowestValue = (long) (index - shift * SUB_BUCKET_HALF_COUNT) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds. Negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(getBucketIndex(value));
+        totalValue.addAndGet(value);
+        maxValue.accumulateAndGet(value, Math::max);
+        totalCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     *
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Gets the highest latency recorded.
+     *
+     * @return the highest latency recorded in nanoseconds, or 0 if none were recorded
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Gets the mean of the latencies recorded.
+     *
+     * @return the mean latency in nanoseconds, or 0 if none were recorded
+     */
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0.0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Gets the latency below which the given percentage of the recorded latencies fall.
+     *
+     * @param percentile the percentage, between 0 and 100
+     *
+     * @return the latency at the percentile in nanoseconds, or 0 if none were recorded. The value is the highest
+     * value of its bucket, but never more than the highest latency recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        // Find the bucket holding the value of the given rank
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code LoadDriver} class replays queries against an {@link IndexSnapshot} to measure the latency and
+ * throughput of the {@link QueryHandler}, and compares them with a saved baseline.
+ * <p>
+ * The queries are either read from a query log or generated from the words of the dataset as a mix of SEARCH and
+ * BIGRAM queries, some of them misspelled. When a target rate is given, the queries are started on a fixed
+ * schedule whatever the time taken by the previous ones (open loop), and the latency of each query is measured
+ * from the time at which it should have started. A slow query therefore also counts against the queries delayed
+ * behind it, instead of hiding them (coordinated omission). Without a target rate, a fixed number of threads run
+ * the queries one after the other (closed loop), and the latency is measured from the actual start of each query.
+ * <p>
+ * Usage: {@code java LoadDriver [--option value]...}, where the options are:
+ * <ul>
+ *     <li>{@code --log} the query log to replay. Without it, synthetic queries are generated</li>
+ *     <li>{@code --queries} the number of synthetic queries (default 200)</li>
+ *     <li>{@code --bigram-fraction} the fraction of synthetic queries which are BIGRAM queries (default 0.5)</li>
+ *     <li>{@code --misspelling-rate} the probability of misspelling each synthetic query word (default 0.1)</li>
+ *     <li>{@code --seed} the seed of the synthetic queries (default 0)</li>
+ *     <li>{@code --rate} the target number of queries started per second, or 0 for a closed loop (default 5)</li>
+ *     <li>{@code --concurrency} the number of threads running the queries (default the number of processors)</li>
+ *     <li>{@code --warmup} the number of queries run before the measured run (default 20)</li>
+ *     <li>{@code --save-baseline} the file in which to save the results as a baseline</li>
+ *     <li>{@code --baseline} the baseline file to compare the results with</li>
+ *     <li>{@code --tolerance} the relative slowdown above which a regression is reported (default 0.1)</li>
+ * </ul>
+ * The report is written to {@code load_report.txt}, and the program fails if a regression is found. A baseline
+ * saves the settings of its run, and the program fails if it is compared with a run using other settings.
+ */
+public class LoadDriver {
+    /**
+     * Directory path for the dataset.
+     */
+    private static final String DATASET_DIR = "dataset";
+    /**
+     * Name of the solution file of the QueryHandler, which is not written by the load driver.
+     */
+    private static final String SOLUTION_FILE = "solution.txt";
+    /**
+     * Name of the report file.
+     */
+    private static final String REPORT_FILE = "load_report.txt";
+    /**
+     * Letters used to misspell words.
+     */
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+    /**
+     * Highest number of words of a synthetic SEARCH query.
+     */
+    private static final int MAX_SEARCH_WORDS = 3;
+    /**
+     * Names of the options, as described in the documentation of the class.
+     */
+    private static final List<String> OPTIONS = List.of("log", "queries", "bigram-fraction", "misspelling-rate", "seed", "rate",
+            "concurrency", "warmup", "save-baseline", "baseline", "tolerance");
+    /**
+     * QueryHandler used to answer the queries.
+     */
+    private final QueryHandler queryHandler;
+    /**
+     * Snapshot against which the queries are run.
+     */
+    private final IndexSnapshot snapshot;
+    /**
+     * Number of threads running the queries.
+     */
+    private final int concurrency;
+    /**
+     * Target number of queries started per second, or 0 to run the queries in a closed loop.
+     */
+    private final double targetRate;
+
+    /**
+     * Constructs a LoadDriver running queries against the specified snapshot.
+     *
+     * @param queryHandler the QueryHandler used to answer the queries
+     * @param snapshot     the snapshot against which the queries are run
+     * @param concurrency  the number of threads running the queries
+     * @param targetRate   the target number of queries started per second, or 0 to run the queries in a closed
+     *                     loop
+     *
+     * @throws RuntimeException if the concurrency is not positive or the target rate is negative
+     */
+    public LoadDriver(QueryHandler queryHandler, IndexSnapshot snapshot, int concurrency, double targetRate) {
+        if (concurrency <= 0) {
+            throw new RuntimeException("Concurrency must be positive");
+        }
+        if (targetRate < 0 || Double.isNaN(targetRate)) {
+            throw new RuntimeException("Target rate cannot be negative");
+        }
+        this.queryHandler = queryHandler;
+        this.snapshot = snapshot;
+        this.concurrency = concurrency;
+        this.targetRate = targetRate;
+    }
+
+    /**
+     * Runs the queries and records their latencies.
+     *
+     * @param queries the queries to run
+     *
+     * @return the LoadReport holding the latencies of the queries
+     *
+     * @throws RuntimeException if a query has an invalid format or the run is interrupted
+     */
+    public LoadReport run(ArrayList<String> queries) {
+        // Find the type of every query before the run, so invalid queries are reported right away
+        QueryType[] queryTypes = new QueryType[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            queryTypes[i] = QueryHandler.getQueryType(queries.get(i));
+        }
+
+        LoadReport report = new LoadReport();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long startNanos = System.nanoTime();
+        try {
+            if (targetRate > 0) {
+                // Start each query at its scheduled time, even if the previous ones are not done
+                double intervalNanos = 1_000_000_000.0 / targetRate;
+                for (int i = 0; i < queries.size(); i++) {
+                    long intendedStartNanos = startNanos + (long) (i * intervalNanos);
+                    waitUntil(intendedStartNanos);
+                    int queryIndex = i;
+                    executor.execute(() -> runQuery(queries.get(queryIndex), queryTypes[queryIndex], intendedStartNanos, report));
+                }
+            } else {
+                // Each thread starts a new query as soon as its previous one is done
+                AtomicInteger nextQuery = new AtomicInteger();
+                for (int thread = 0; thread < concurrency; thread++) {
+                    executor.execute(() -> {
+                        int queryIndex;
+                        while ((queryIndex = nextQuery.getAndIncrement()) < queries.size()) {
+                            runQuery(queries.get(queryIndex), queryTypes[queryIndex], System.nanoTime(), report);
+                        }
+                    });
+                }
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Keep waiting for the queries which are still running
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the queries");
+        } finally {
+            executor.shutdownNow();
+        }
+        report.setElapsedNanos(System.nanoTime() - startNanos);
+        return report;
+    }
+
+    /**
+     * Runs a query and records its latency, measured from the given start time.
+     *
+     * @param query      the query to run
+     * @param queryType  the type of the query
+     * @param startNanos the time at which the query should have started, from {@link System#nanoTime()}
+     * @param report     the LoadReport in which to record the latency
+     */
+    private void runQuery(String query, QueryType queryType, long startNanos, LoadReport report) {
+        boolean failed = false;
+        try {
+            queryHandler.processQuery(query, snapshot);
+        } catch (RuntimeException e) {
+            // A query which cannot be answered still took time to process
+            failed = true;
+        }
+        report.record(queryType, System.nanoTime() - startNanos, failed);
+    }
+
+    /**
+     * Waits until the given time.
+     *
+     * @param deadlineNanos the time until which to wait, from {@link System#nanoTime()}
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    private static void waitUntil(long deadlineNanos) throws InterruptedException {
+        long remainingNanos;
+        while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remainingNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Generates a mix of SEARCH and BIGRAM queries from the words of a snapshot. Words are picked from the
+     * processed files, so frequent words are picked more often, like in real queries.
+     *
+     * @param snapshot        the snapshot from which the words are picked
+     * @param count           the number of queries to generate
+     * @param bigramFraction  the fraction of the queries which are BIGRAM queries
+     * @param misspellingRate the probability of misspelling each word
+     * @param seed            the seed of the random number generator, so that the same queries can be generated
+     *                        again
+     *
+     * @return the generated queries
+     *
+     * @throws RuntimeException if the snapshot contains no words
+     */
+    public static ArrayList<String> generateQueries(IndexSnapshot snapshot, int count, double bigramFraction, double misspellingRate, long seed) {
+        // Only keep the files with words, since an empty file is processed as a single empty word
+        ArrayList<String[]> files = new ArrayList<>();
+        for (String[] processedFile : snapshot.getProcessedFiles()) {
+            if (processedFile.length > 0 && !processedFile[0].isEmpty()) {
+                files.add(processedFile);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new RuntimeException("No words in dataset");
+        }
+
+        Random random = new Random(seed);
+        ArrayList<String> queries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean bigram = random.nextDouble() < bigramFraction;
+            int wordCount = bigram ? 1 : 1 + random.nextInt(MAX_SEARCH_WORDS);
+
+            StringBuilder query = new StringBuilder(bigram ? QueryType.BIGRAM.getQueryPrefix() : QueryType.SEARCH.getQueryPrefix());
+            for (int j = 0; j < wordCount; j++) {
+                String[] file = files.get(random.nextInt(files.size()));
+                String word = file[random.nextInt(file.length)];
+                if (random.nextDouble() < misspellingRate) {
+                    word = misspell(word, random);
+                }
+                query.append(j == 0 ? "" : " ").append(word);
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Misspells a word by substituting, inserting, deleting or transposing one letter.
+     *
+     * @param word   the word to misspell
+     * @param random the random number generator
+     *
+     * @return the misspelled word
+     */
+    private static String misspell(String word, Random random) {
+        StringBuilder misspelledWord = new StringBuilder(word);
+        char letter = LETTERS.charAt(random.nextInt(LETTERS.length()));
+        // Words of one letter can only be misspelled by substituting or inserting a letter
+        int edit = random.nextInt(word.length() > 1 ? 4 : 2);
+        int position = random.nextInt(word.length());
+        switch (edit) {
+            case 0:
+                misspelledWord.setCharAt(position, letter);
+                break;
+            case 1:
+                misspelledWord.insert(position, letter);
+                break;
+            case 2:
+                misspelledWord.deleteCharAt(position);
+                break;
+            case 3:
+                position = Math.min(position, word.length() - 2);
+                misspelledWord.setCharAt(position, word.charAt(position + 1));
+                misspelledWord.setCharAt(position + 1, word.charAt(position));
+                break;
+        }
+        return misspelledWord.toString();
+    }
+
+    /**
+     * The main method that builds the snapshot of the dataset, runs the load and writes the report.
+     *
+     * @param args the options of the run, as described in the documentation of the class
+     *
+     * @throws RuntimeException if an option is invalid or a regression against the baseline is found
+     */
+    public static void main(String[] args) {
+        CustomHashMap<String, String> options = new CustomHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            // A misspelled option would otherwise be ignored, such as a baseline which is silently not compared
+            if (!args[i].startsWith("--") || i + 1 >= args.length || !OPTIONS.contains(args[i].substring(2))) {
+                throw new RuntimeException("Invalid option: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        try (SnapshotIndex index = new SnapshotIndex(DATASET_DIR)) {
+            IndexSnapshot snapshot = index.rebuild();
+
+            // Replay the query log, or generate synthetic queries
+            String logPath = options.get("log");
+            QueryHandler queryHandler;
+            String settings;
+            if (logPath != null) {
+                queryHandler = new QueryHandler(logPath, SOLUTION_FILE);
+                settings = String.format(Locale.ROOT, "log=%s queries=%d", logPath, queryHandler.getQueries().size());
+            } else {
+                int count = Integer.parseInt(options.getOrDefault("queries", "200"));
+                double bigramFraction = Double.parseDouble(options.getOrDefault("bigram-fraction", "0.5"));
+                double misspellingRate = Double.parseDouble(options.getOrDefault("misspelling-rate", "0.1"));
+                long seed = Long.parseLong(options.getOrDefault("seed", "0"));
+                queryHandler = new QueryHandler(generateQueries(snapshot, count, bigramFraction, misspellingRate, seed), SOLUTION_FILE);
+                settings = String.format(Locale.ROOT, "queries=%d bigram-fraction=%s misspelling-rate=%s seed=%d",
+                        count, bigramFraction, misspellingRate, seed);
+            }
+            ArrayList<String> queries = queryHandler.getQueries();
+            if (queries.isEmpty()) {
+                throw new RuntimeException("No queries to run");
+            }
+
+            int concurrency = Integer.parseInt(options.getOrDefault("concurrency", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            double targetRate = Double.parseDouble(options.getOrDefault("rate", "5"));
+            int warmup = Integer.parseInt(options.getOrDefault("warmup", "20"));
+
+            // Only runs with the same queries, rate and concurrency can be compared
+            settings += String.format(Locale.ROOT, " rate=%s concurrency=%d", targetRate, concurrency);
+            // Fail before the run if the baseline cannot be compared with it
+            String baselinePath = options.get("baseline");
+            ArrayList<LoadReport.Summary> baseline = baselinePath == null ? null : LoadReport.load(baselinePath, settings);
+
+            // Warm up the JIT compiler in a closed loop, without recording the latencies
+            ArrayList<String> warmupQueries = new ArrayList<>();
+            for (int i = 0; i < warmup; i++) {
+                warmupQueries.add(queries.get(i % queries.size()));
+            }
+            new LoadDriver(queryHandler, snapshot, concurrency, 0).run(warmupQueries);
+
+            LoadReport report = new LoadDriver(queryHandler, snapshot, concurrency, targetRate).run(queries);
+
+            ArrayList<String> regressions;
+            try (PrintWriter printWriter = new PrintWriter(new BufferedWriter(new FileWriter(REPORT_FILE, false)))) {
+                regressions = report.write(printWriter, baseline, Double.parseDouble(options.getOrDefault("tolerance", "0.1")));
+            } catch (IOException e) {
+                throw new RuntimeException("Invalid file output path");
+            }
+
+            String saveBaselinePath = options.get("save-baseline");
+            if (saveBaselinePath != null) {
+                report.save(saveBaselinePath, settings);
+            }
+            if (!regressions.isEmpty()) {
+                throw new RuntimeException("Regressions found against baseline, see " + REPORT_FILE);
+            }
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid option value: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code LoadReport} class collects the latencies and errors of the queries run by a {@link LoadDriver},
+ * grouped by {@link QueryType}, and summarizes them as percentiles and throughput.
+ * <p>
+ * A summary can be saved as a baseline and compared with the summary of a later run, so that a run which is
+ * slower than the baseline by more than a given tolerance is reported as a regression. The baseline also holds the
+ * settings of its run, and is only compared with runs using the same settings, since the throughput of an open
+ * loop run mostly reflects its target rate. Only the percentiles with
+ * enough queries above them are compared, and the highest latency is reported but never compared.
+ */
+public class LoadReport {
+    /**
+     * Percentiles included in the summary of each query type.
+     */
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    /**
+     * Number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    /**
+     * Minimum number of queries above a percentile, in both runs, for the percentile to be compared. A higher
+     * percentile is only the few slowest queries, so a single pause would be reported as a regression.
+     */
+    private static final int MIN_TAIL_SAMPLES = 10;
+    /**
+     * Prefix of the line holding the settings of the run in a baseline file.
+     */
+    private static final String SETTINGS_PREFIX = "settings ";
+    /**
+     * Latencies of the queries of each type.
+     */
+    private final CustomHashMap<QueryType, LatencyHistogram> histograms;
+    /**
+     * Number of queries of each type which failed.
+     */
+    private final CustomHashMap<QueryType, AtomicLong> errors;
+    /**
+     * Duration of the run in nanoseconds.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Constructs an empty LoadReport.
+     */
+    public LoadReport() {
+        this.histograms = new CustomHashMap<>();
+        this.errors = new CustomHashMap<>();
+        // Every type is added before the run, so the maps are only read while the queries are recorded
+        for (QueryType queryType : QueryType.values()) {
+            this.histograms.put(queryType, new LatencyHistogram());
+            this.errors.put(queryType, new AtomicLong());
+        }
+    }
+
+    /**
+     * Records the latency of a query. This method can be called by several threads at the same time.
+     *
+     * @param queryType    the type of the query
+     * @param latencyNanos the latency of the query in nanoseconds
+     * @param failed       whether the query failed
+     */
+    public void record(QueryType queryType, long latencyNanos, boolean failed) {
+        histograms.get(queryType).record(latencyNanos);
+        if (failed) {
+            errors.get(queryType).incrementAndGet();
+        }
+    }
+
+    /**
+     * Sets the duration of the run, used to compute the throughput.
+     *
+     * @param elapsedNanos the duration of the run in nanoseconds
+     */
+    public void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the latencies of the queries of the given type.
+     *
+     * @param queryType the type of the queries
+     *
+     * @return the LatencyHistogram of the queries of the type
+     */
+    public LatencyHistogram getHistogram(QueryType queryType) {
+        return histograms.get(queryType);
+    }
+
+    /**
+     * Summarizes the run for each query type which was run at least once.
+     *
+     * @return the summary of each query type, in the order of the QueryType constants
+     */
+    public ArrayList<Summary> summarize() {
+        ArrayList<Summary> summaries = new ArrayList<>();
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+        for (QueryType queryType : QueryType.values()) {
+            LatencyHistogram histogram = histograms.get(queryType);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            double[] latencies = new double[PERCENTILES.length + 1];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                latencies[i] = histogram.getValueAtPercentile(PERCENTILES[i]) / NANOS_PER_MILLI;
+            }
+            latencies[PERCENTILES.length] = histogram.getMax() / NANOS_PER_MILLI;
+            double throughput = elapsedSeconds > 0 ? histogram.getCount() / elapsedSeconds : 0.0;
+            summaries.add(new Summary(queryType.name(), histogram.getCount(), errors.get(queryType).get(), throughput, latencies));
+        }
+        return summaries;
+    }
+
+    /**
+     * Writes the summary of the run, and its comparison with a baseline if one is given.
+     *
+     * @param printWriter the PrintWriter to write to
+     * @param baseline    the summaries of the baseline, or null if there is no baseline
+     * @param tolerance   the relative increase of a latency, or decrease of the throughput, above which a query
+     *                    type is reported as a regression, such as 0.1 for 10%
+     *
+     * @return the list of regressions found, empty if there is no baseline
+     */
+    public ArrayList<String> write(PrintWriter printWriter, ArrayList<Summary> baseline, double tolerance) {
+        printWriter.println(Summary.HEADER);
+        ArrayList<Summary> summaries = summarize();
+        for (Summary summary : summaries) {
+            printWriter.println(summary);
+        }
+        if (baseline == null) {
+            return new ArrayList<>();
+        }
+
+        // Compare each query type with the same type in the baseline
+        CustomHashMap<String, Summary> baselineSummaries = new CustomHashMap<>();
+        for (Summary summary : baseline) {
+            baselineSummaries.put(summary.queryType, summary);
+        }
+        ArrayList<String> regressions = new ArrayList<>();
+        for (Summary summary : summaries) {
+            Summary expected = baselineSummaries.get(summary.queryType);
+            if (expected != null) {
+                regressions.addAll(summary.compare(expected, tolerance));
+            }
+        }
+
+        printWriter.println();
+        if (regressions.isEmpty()) {
+            printWriter.println("No regressions against baseline");
+        }
+        for (String regression : regressions) {
+            printWriter.println("REGRESSION " + regression);
+        }
+        return regressions;
+    }
+
+    /**
+     * Saves the summary of the run as a baseline, along with the settings of the run.
+     *
+     * @param baselinePath the path of the baseline file
+     * @param settings     the settings of the run, on a single line
+     *
+     * @throws RuntimeException if the file cannot be written
+     */
+    public void save(String baselinePath, String settings) {
+        try (PrintWriter printWriter = new PrintWriter(new BufferedWriter(new FileWriter(baselinePath, false)))) {
+            printWriter.println(SETTINGS_PREFIX + settings);
+            printWriter.println(Summary.HEADER);
+            for (Summary summary : summarize()) {
+                printWriter.println(summary);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid baseline path");
+        }
+    }
+
+    /**
+     * Reads a baseline saved by {@link #save(String, String)}, checking that it was run with the given settings.
+     *
+     * @param baselinePath the path of the baseline file
+     * @param settings     the settings of the run to compare with the baseline
+     *
+     * @return the summaries of the baseline
+     *
+     * @throws RuntimeException if the file cannot be read, is not a valid baseline or was run with other settings
+     */
+    public static ArrayList<Summary> load(String baselinePath, String settings) {
+        ArrayList<Summary> summaries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(baselinePath))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(SETTINGS_PREFIX)) {
+                throw new RuntimeException("Invalid baseline format");
+            }
+            String baselineSettings = line.substring(SETTINGS_PREFIX.length());
+            if (!baselineSettings.equals(settings)) {
+                throw new RuntimeException("Baseline run with other settings: " + baselineSettings + ", current run: " + settings);
+            }
+
+            line = reader.readLine();
+            if (!Summary.HEADER.equals(line)) {
+                throw new RuntimeException("Invalid baseline format");
+            }
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    summaries.add(Summary.parse(line));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid baseline path");
+        }
+        return summaries;
+    }
+
+    /**
+     * The summary of the queries of one type: their number, throughput and latency percentiles.
+     */
+    public static class Summary {
+        /**
+         * Header of the columns of a summary, also used to recognize a baseline file.
+         */
+        private static final String HEADER = String.format(Locale.ROOT, "%-16s %8s %8s %10s %10s %10s %10s %10s %10s",
+                "type", "count", "errors", "queries/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        /**
+         * Name of the query type.
+         */
+        private final String queryType;
+        /**
+         * Number of queries run.
+         */
+        private final long count;
+        /**
+         * Number of queries which failed.
+         */
+        private final long errors;
+        /**
+         * Number of queries completed per second.
+         */
+        private final double throughput;
+        /**
+         * Latency in milliseconds at each percentile, followed by the highest latency.
+         */
+        private final double[] latencies;
+
+        /**
+         * Constructs a Summary with the specified values.
+         *
+         * @param queryType  the name of the query type
+         * @param count      the number of queries run
+         * @param errors     the number of queries which failed
+         * @param throughput the number of queries completed per second
+         * @param latencies  the latency in milliseconds at each percentile, followed by the highest latency
+         */
+        private Summary(String queryType, long count, long errors, double throughput, double[] latencies) {
+            this.queryType = queryType;
+            this.count = count;
+            this.errors = errors;
+            this.throughput = throughput;
+            this.latencies = latencies;
+        }
+
+        /**
+         * Parses a summary written by {@link #toString()}.
+         *
+         * @param line the line to parse
+         *
+         * @return the parsed summary
+         *
+         * @throws RuntimeException if the line is not a valid summary
+         */
+        private static Summary parse(String line) {
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length != 5 + PERCENTILES.length) {
+                throw new RuntimeException("Invalid baseline format: " + line);
+            }
+            try {
+                double[] latencies = new double[PERCENTILES.length + 1];
+                for (int i = 0; i < latencies.length; i++) {
+                    latencies[i] = Double.parseDouble(columns[4 + i]);
+                }
+                return new Summary(columns[0], Long.parseLong(columns[1]), Long.parseLong(columns[2]), Double.parseDouble(columns[3]), latencies);
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid baseline format: " + line);
+            }
+        }
+
+        /**
+         * Compares this summary with the summary of the same query type in a baseline. A percentile is only
+         * compared if both runs have at least MIN_TAIL_SAMPLES queries above it, and the highest latency is not
+         * compared since it is a single query.
+         *
+         * @param baseline  the summary of the baseline
+         * @param tolerance the relative increase of a latency or of the error rate, or decrease of the throughput,
+         *                  above which a regression is reported
+         *
+         * @return the description of each regression found
+         */
+        private ArrayList<String> compare(Summary baseline, double tolerance) {
+            ArrayList<String> regressions = new ArrayList<>();
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (!hasTailSamples(PERCENTILES[i]) || !baseline.hasTailSamples(PERCENTILES[i])) {
+                    continue;
+                }
+                if (latencies[i] > baseline.latencies[i] * (1 + tolerance)) {
+                    regressions.add(String.format(Locale.ROOT, "%s p%s: %.3f ms, baseline %.3f ms",
+                            queryType, formatPercentile(PERCENTILES[i]), latencies[i], baseline.latencies[i]));
+                }
+            }
+            if (throughput < baseline.throughput * (1 - tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s throughput: %.3f queries/s, baseline %.3f queries/s",
+                        queryType, throughput, baseline.throughput));
+            }
+            if (getErrorRate() > baseline.getErrorRate() * (1 + tolerance)) {
+                regressions.add(String.format(Locale.ROOT, "%s errors: %d of %d, baseline %d of %d",
+                        queryType, errors, count, baseline.errors, baseline.count));
+            }
+            return regressions;
+        }
+
+        /**
+         * Checks if enough queries are above the given percentile for it to be compared.
+         *
+         * @param percentile the percentile
+         *
+         * @return true if at least MIN_TAIL_SAMPLES queries are above the percentile, false otherwise
+         */
+        private boolean hasTailSamples(double percentile) {
+            return count * (100.0 - percentile) / 100.0 >= MIN_TAIL_SAMPLES;
+        }
+
+        /**
+         * Gets the fraction of the queries which failed.
+         *
+         * @return the fraction of the queries which failed, or 0 if no query was run
+         */
+        private double getErrorRate() {
+            return count == 0 ? 0.0 : (double) errors / count;
+        }
+
+        /**
+         * Formats a percentile without trailing zeros.
+         *
+         * @param percentile the percentile
+         *
+         * @return the formatted percentile, such as 99 or 99.9
+         */
+        private static String formatPercentile(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+        }
+
+        /**
+         * Formats the summary as one line of aligned columns.
+         *
+         * @return the formatted summary
+         */
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-16s %8d %8d %10.3f",
+                    queryType, count, errors, throughput));
+            for (double latency : latencies) {
+                line.append(String.format(Locale.ROOT, " %10.3f", latency));
+            }
+            return line.toString();
+        }
+    }
+}
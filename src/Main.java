@@ -1,11 +1,10 @@
 /*
  * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
  */
-import java.util.ArrayList;
 
 /**
  * The Main class serves as the entry point for the application.
- * It demonstrates the usage of the Preprocessor and QueryHandler classes
+ * It demonstrates the usage of the SnapshotIndex and QueryHandler classes
  * to preprocess a dataset and handle queries based on the processed data.
  */
 public class Main {
@@ -29,17 +28,13 @@ public class Main {
      * @param args command-line arguments (not used in this context)
      */
     public static void main(String[] args) {
-        // Preprocess the dataset
-        Preprocessor preprocessor = new Preprocessor();
-        preprocessor.processDirectory(DATASET_DIR);
+        // Preprocess the dataset and get the resulting snapshot
+        try (SnapshotIndex index = new SnapshotIndex(DATASET_DIR)) {
+            IndexSnapshot snapshot = index.rebuild();
 
-        // Get the processed files, the file names and the wordMap
-        ArrayList<String[]> processedFiles = preprocessor.getProcessedFiles();
-        ArrayList<String> fileNames = preprocessor.getFileNames();
-        WordMap wordMap = preprocessor.getWordMap();
-
-        // Read query file
-        QueryHandler queryHandler = new QueryHandler(QUERY_FILE, SOLUTION_FILE);
-        queryHandler.processQueries(wordMap, processedFiles, fileNames);
+            // Read query file
+            QueryHandler queryHandler = new QueryHandler(QUERY_FILE, SOLUTION_FILE);
+            queryHandler.processQueries(snapshot);
+        }
     }
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code ParallelIndexBuilder} class builds the same {@link WordMap} as {@link Preprocessor} does, using
+ * several threads.
+ * <p>
+ * The words are partitioned into stripes by their hash. First, the files are positionalized concurrently and the
+ * positions of their words are split by stripe. Then, each stripe is merged into its own WordMap by a single
+ * thread, going through the files in order, so the file names of every word stay in the same order as in the
+ * list of file names without any locking. Finally, the WordMaps of the stripes, which have no word in common,
+ * are combined.
+ */
+public class ParallelIndexBuilder {
+    /**
+     * Number of stripes per thread, so that the stripes of uneven sizes are balanced between the threads.
+     */
+    private static final int STRIPES_PER_THREAD = 4;
+
+    /**
+     * Builds a WordMap from the processed files using one thread per available processor.
+     *
+     * @param processedFiles the list of processed files containing cleaned and lemmatized content
+     * @param fileNames      the list of file names corresponding to the processed files
+     *
+     * @return the WordMap associating each word with a FileMap containing file names and positions
+     */
+    public static WordMap build(ArrayList<String[]> processedFiles, ArrayList<String> fileNames) {
+        return build(processedFiles, fileNames, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds a WordMap from the processed files using the specified number of threads.
+     *
+     * @param processedFiles the list of processed files containing cleaned and lemmatized content
+     * @param fileNames      the list of file names corresponding to the processed files
+     * @param parallelism    the number of threads
+     *
+     * @return the WordMap associating each word with a FileMap containing file names and positions
+     *
+     * @throws RuntimeException if the build fails or is interrupted
+     */
+    public static WordMap build(ArrayList<String[]> processedFiles, ArrayList<String> fileNames, int parallelism) {
+        if (parallelism <= 0) {
+            throw new RuntimeException("Parallelism must be positive");
+        }
+        int stripeCount = parallelism * STRIPES_PER_THREAD;
+
+        // The workers run with the priority and daemon flag of the caller, so that a build started by a low
+        // priority daemon thread does not compete with the queries nor keep the application running
+        Thread caller = Thread.currentThread();
+        int priority = caller.getPriority();
+        boolean daemon = caller.isDaemon();
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, caller.getName() + "-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(daemon);
+            thread.setPriority(priority);
+            return thread;
+        });
+
+        try {
+            // Positionalize every file and split its words by stripe
+            FileStripes[] fileStripes = new FileStripes[processedFiles.size()];
+            ArrayList<Callable<Void>> positionalizeTasks = new ArrayList<>(processedFiles.size());
+            for (int i = 0; i < processedFiles.size(); i++) {
+                int fileIndex = i;
+                positionalizeTasks.add(() -> {
+                    fileStripes[fileIndex] = new FileStripes(Utils.positionalize(processedFiles.get(fileIndex)), stripeCount);
+                    return null;
+                });
+            }
+            waitFor(executor.invokeAll(positionalizeTasks));
+
+            // Merge each stripe, going through the files in order
+            ArrayList<Callable<WordMap>> mergeTasks = new ArrayList<>(stripeCount);
+            for (int stripe = 0; stripe < stripeCount; stripe++) {
+                int stripeIndex = stripe;
+                mergeTasks.add(() -> mergeStripe(fileStripes, fileNames, stripeIndex));
+            }
+            ArrayList<WordMap> stripeWordMaps = waitFor(executor.invokeAll(mergeTasks));
+
+            // Combine the stripes, which have no word in common
+            int wordCount = 0;
+            for (WordMap stripeWordMap : stripeWordMaps) {
+                wordCount += stripeWordMap.size();
+            }
+            WordMap wordMap = new WordMap(wordCount * 2 + 1);
+            for (WordMap stripeWordMap : stripeWordMaps) {
+                wordMap.putAll(stripeWordMap);
+            }
+            return wordMap;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building the WordMap");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Merges the words of a stripe of every file into a WordMap.
+     *
+     * @param fileStripes the words of each file, split by stripe
+     * @param fileNames   the list of file names corresponding to the processed files
+     * @param stripe      the index of the stripe
+     *
+     * @return the WordMap of the words of the stripe
+     */
+    private static WordMap mergeStripe(FileStripes[] fileStripes, ArrayList<String> fileNames, int stripe) {
+        // The lists are only put in FileMaps once complete, since a FileMap is keyed by its list of file names
+        CustomHashMap<String, Map.Entry<ArrayList<String>, ArrayList<ArrayList<Integer>>>> wordFiles = new CustomHashMap<>();
+
+        for (int i = 0; i < fileStripes.length; i++) {
+            String fileName = fileNames.get(i);
+
+            for (Map.Entry<String, ArrayList<Integer>> entry : fileStripes[i].get(stripe)) {
+                Map.Entry<ArrayList<String>, ArrayList<ArrayList<Integer>>> files = wordFiles.get(entry.getKey());
+                if (files == null) {
+                    files = new AbstractMap.SimpleImmutableEntry<>(new ArrayList<>(), new ArrayList<>());
+                    wordFiles.put(entry.getKey(), files);
+                }
+
+                // Files are visited once each, so the file name is never already in the list
+                files.getKey().add(fileName);
+                files.getValue().add(entry.getValue());
+            }
+        }
+
+        WordMap wordMap = new WordMap(wordFiles.size() * 2 + 1);
+        for (Map.Entry<String, Map.Entry<ArrayList<String>, ArrayList<ArrayList<Integer>>>> entry : wordFiles.entrySet()) {
+            FileMap fileMap = new FileMap();
+            fileMap.put(entry.getValue().getKey(), entry.getValue().getValue());
+            wordMap.put(entry.getKey(), fileMap);
+        }
+        return wordMap;
+    }
+
+    /**
+     * Waits for every task to complete and gets their results.
+     *
+     * @param futures the futures of the tasks
+     * @param <T>     the type of the results
+     *
+     * @return the results of the tasks, in order
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     * @throws RuntimeException     if a task failed
+     */
+    private static <T> ArrayList<T> waitFor(Iterable<Future<T>> futures) throws InterruptedException {
+        ArrayList<T> results = new ArrayList<>();
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Could not build the WordMap", e.getCause());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The positions of the words of a file, split by stripe.
+     */
+    private static class FileStripes {
+        /**
+         * Words of each stripe with their positions.
+         */
+        private final ArrayList<ArrayList<Map.Entry<String, ArrayList<Integer>>>> stripes;
+
+        /**
+         * Splits the positionalized content of a file by stripe.
+         *
+         * @param positionalizedFileContent the positions of every word of the file
+         * @param stripeCount               the number of stripes
+         */
+        private FileStripes(CustomHashMap<String, ArrayList<Integer>> positionalizedFileContent, int stripeCount) {
+            this.stripes = new ArrayList<>(stripeCount);
+            for (int i = 0; i < stripeCount; i++) {
+                this.stripes.add(new ArrayList<>());
+            }
+
+            for (Map.Entry<String, ArrayList<Integer>> entry : positionalizedFileContent.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                // Mix the high bits of the hash into the low bits used to pick the stripe
+                int hash = entry.getKey().hashCode();
+                hash ^= hash >>> 16;
+                this.stripes.get(Math.floorMod(hash, stripeCount)).add(entry);
+            }
+        }
+
+        /**
+         * Gets the words of a stripe with their positions.
+         *
+         * @param stripe the index of the stripe
+         *
+         * @return the list of words of the stripe with their positions
+         */
+        private ArrayList<Map.Entry<String, ArrayList<Integer>>> get(int stripe) {
+            return stripes.get(stripe);
+        }
+    }
+}
@@ -6,9 +6,7 @@ import edu.stanford.nlp.pipeline.CoreDocument;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.util.logging.RedwoodConfiguration;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Map;
@@ -20,27 +18,90 @@ import java.util.Properties;
  * each word with a FileMap containing file names and positions.
  */
 public class Preprocessor {
+    /**
+     * Minimum number of files for the WordMap to be built by a ParallelIndexBuilder. Smaller datasets are not
+     * worth the cost of starting the threads.
+     */
+    private static final int PARALLEL_BUILD_THRESHOLD = 64;
     /**
      * StanfordCoreNLP pipeline for natural language processing.
      */
     private final StanfordCoreNLP pipeline;
+    /**
+     * TextNormalizer used to read and clean the text files.
+     */
+    private final TextNormalizer textNormalizer = new TextNormalizer();
+    /**
+     * TermDictionary holding the single instance of every processed word.
+     */
+    private final TermDictionary termDictionary;
+    /**
+     * Maximum number of threads used to build the WordMap.
+     */
+    private final int buildParallelism;
     /**
      * List of file names processed by the preprocessor.
      */
-    private final ArrayList<String> fileNames = new ArrayList<>(); // List of file names
+    private ArrayList<String> fileNames; // List of file names
     /**
      * WordMap associating each word with a FileMap containing file names and positions.
      */
-    private WordMap wordMap = new WordMap();
+    private WordMap wordMap;
     /**
      * List of processed files containing lemmatized and cleaned content.
      */
     private ArrayList<String[]> processedFiles;
+    /**
+     * CorpusVocabulary identifying the words of the WordMap in the TermDictionary.
+     */
+    private CorpusVocabulary vocabulary;
+    /**
+     * CompletionTrie built over the words of the WordMap.
+     */
+    private CompletionTrie completionTrie;
+    /**
+     * BitmapIndex associating each word with the set of files containing it.
+     */
+    private BitmapIndex bitmapIndex;
+    /**
+     * DenseIndex used to score files and bigrams in dense arrays.
+     */
+    private DenseIndex denseIndex;
 
     /**
      * Constructs a Preprocessor with the necessary setup for natural language processing.
      */
     public Preprocessor() {
+        this(new TermDictionary());
+    }
+
+    /**
+     * Constructs a Preprocessor with the necessary setup for natural language processing, storing the processed
+     * words in the given TermDictionary so that they can be shared with other corpora.
+     *
+     * @param termDictionary the TermDictionary holding the single instance of every processed word
+     */
+    public Preprocessor(TermDictionary termDictionary) {
+        this(termDictionary, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a Preprocessor with the necessary setup for natural language processing, storing the processed
+     * words in the given TermDictionary and building the WordMap with at most the given number of threads. A
+     * preprocessor rebuilding an index in the background should leave some processors to the queries.
+     *
+     * @param termDictionary   the TermDictionary holding the single instance of every processed word
+     * @param buildParallelism the maximum number of threads used to build the WordMap
+     *
+     * @throws RuntimeException if the parallelism is not positive
+     */
+    public Preprocessor(TermDictionary termDictionary, int buildParallelism) {
+        if (buildParallelism <= 0) {
+            throw new RuntimeException("Parallelism must be positive");
+        }
+        this.termDictionary = termDictionary;
+        this.buildParallelism = buildParallelism;
+
         // Set up pipeline properties
         Properties properties = new Properties();
         // Set the list of annotators to run
@@ -57,6 +118,15 @@ public class Preprocessor {
     /**
      * Processes all text files in the specified directory, extracting lemmatized words,
      * and creating a WordMap associating each word with a FileMap containing file names and positions.
+     * <p>
+     * New structures are built every time a directory is processed, so the structures of a previous call,
+     * which may be part of an IndexSnapshot, are never modified.
+     * <p>
+     * The words of the processed files are referenced by a new CorpusVocabulary, which releases them from the
+     * TermDictionary once it is no longer reachable.
+     * <p>
+     * The processed files and the WordMap are kept in memory since the queries read them. To index a dataset
+     * larger than the heap, use {@link #buildIndex(String, String, long)} instead.
      *
      * @param dir the directory path containing text files to be processed
      */
@@ -65,17 +135,65 @@ public class Preprocessor {
         File[] files = folder.listFiles();
 
         if (files == null) {
+            // Forget the previous directory so that a snapshot of it is not mistaken for one of this directory
+            this.processedFiles = null;
             return;
         }
 
         ArrayList<String[]> processedFiles = new ArrayList<>(files.length);
-        for (File file : files) {
-            processedFiles.add(processFile(file).split("\\W+"));
-            this.fileNames.add(file.getName()); // Add the file name to the fileNames list
+        ArrayList<String> fileNames = new ArrayList<>(files.length);
+        try {
+            for (File file : files) {
+                processedFiles.add(tokenizeFile(file));
+                fileNames.add(file.getName()); // Add the file name to the fileNames list
+            }
+
+            this.processedFiles = processedFiles;
+            this.fileNames = fileNames;
+            createWordMap();
+            this.vocabulary = new CorpusVocabulary(this.wordMap.keySet().toArray(new String[0]), this.termDictionary);
+        } finally {
+            // Every word of the processed files is in the vocabulary, so only the words of a failed build are removed
+            this.termDictionary.removeUnused();
+        }
+        this.completionTrie = new CompletionTrie(this.wordMap, this.processedFiles, CompletionTrie.DEFAULT_COMPLETION_COUNT);
+        this.bitmapIndex = new BitmapIndex(this.wordMap, this.vocabulary, this.fileNames);
+        this.denseIndex = new DenseIndex(this.wordMap, this.vocabulary, this.processedFiles, this.fileNames);
+    }
+
+    /**
+     * Processes all text files in the specified directory and writes their index to a file using a
+     * SpimiIndexBuilder, so that the memory used depends on the memory budget and on the size of the largest file
+     * instead of the size of the dataset. The builder also keeps the name of every file.
+     * <p>
+     * This is an offline tool: the words of each file are handed to the builder and dropped before the next file
+     * is processed, so neither the processed files nor the WordMap are kept, and the structures of this
+     * preprocessor are not updated. The resulting index file cannot be queried directly; it can be read back into
+     * memory using {@link SpimiIndexBuilder#readIndex(File, TermDictionary)} once it is known to fit in the heap.
+     *
+     * @param dir          the directory path containing text files to be processed
+     * @param indexPath    the path of the index file to write
+     * @param memoryBudget the maximum estimated size of the in-memory buffer of the builder, in bytes
+     *
+     * @return the SpimiIndexBuilder used, which reports the number of spilled runs, the merge passes and the
+     * merge time
+     *
+     * @throws RuntimeException if there is an issue reading the files or writing the index
+     */
+    public SpimiIndexBuilder buildIndex(String dir, String indexPath, long memoryBudget) {
+        File folder = new File(dir);
+        File[] files = folder.listFiles();
+
+        SpimiIndexBuilder builder = new SpimiIndexBuilder(memoryBudget);
+        if (files != null) {
+            for (File file : files) {
+                // The words are not kept in the TermDictionary, which would otherwise grow with the dataset
+                builder.addFile(file.getName(), tokenizeFile(file, null));
+            }
         }
 
-        this.processedFiles = processedFiles;
-        createWordMap();
+        builder.build(new File(indexPath));
+        return builder;
     }
 
     /**
@@ -88,36 +206,81 @@ public class Preprocessor {
      * @throws RuntimeException if the file is not valid or if there is an issue reading the file
      */
     public String processFile(File file) {
+        return String.join(" ", tokenizeFile(file));
+    }
+
+    /**
+     * Processes a single text file, extracting lemmatized words and returning the cleaned words.
+     * <p>
+     * The content of the file is cleaned and split in a single pass, which results in the same words as splitting
+     * the cleaned content on non-word characters.
+     *
+     * @param file the text file to be processed
+     *
+     * @return the cleaned and lemmatized words of the file
+     *
+     * @throws RuntimeException if the file is not valid or if there is an issue reading the file
+     */
+    public String[] tokenizeFile(File file) {
+        return tokenizeFile(file, this.termDictionary);
+    }
+
+    /**
+     * Processes a single text file, extracting lemmatized words and returning the cleaned words.
+     *
+     * @param file           the text file to be processed
+     * @param termDictionary the TermDictionary holding the single instance of every word, or null to keep the
+     *                       words as they are produced
+     *
+     * @return the cleaned and lemmatized words of the file
+     *
+     * @throws RuntimeException if the file is not valid or if there is an issue reading the file
+     */
+    private String[] tokenizeFile(File file, TermDictionary termDictionary) {
         if (!file.isFile()) {
             throw new RuntimeException("Invalid file");
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file.getPath()))) {
-            StringBuilder word = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
+        ArrayList<String> words = new ArrayList<>();
+        try {
+            this.textNormalizer.readLines(file, line -> {
                 CoreDocument document = getCoreDocument(line);
-                // System.out.println(document.tokens());
                 for (CoreLabel token : document.tokens()) {
-                    // System.out.println(String.format("%s\t%s", token.word(), token.lemma()));
                     String lemma = String.valueOf(token.lemma());
                     if (!(lemma.contains("'s") || lemma.contains("’s"))) {
-                        word.append(lemma).append(" ");
+                        int start = words.size();
+                        TextNormalizer.tokenize(lemma, words);
+                        // Keep a single instance of each word
+                        if (termDictionary != null) {
+                            for (int i = start; i < words.size(); i++) {
+                                words.set(i, termDictionary.intern(words.get(i)));
+                            }
+                        }
                     }
                 }
-            }
-            // Return a string which has the content of the read file, but it is processed and their
-            // words are space-separated.
-            return String.valueOf(word).replaceAll("[^a-zA-Z0-9]", " ").replaceAll("\\s+", " ").trim();
+            });
         } catch (IOException e) {
             throw new RuntimeException("Invalid file path");
         }
+
+        // Splitting empty content results in a single empty word
+        if (words.isEmpty()) {
+            return new String[]{""};
+        }
+        return words.toArray(new String[0]);
     }
 
     /**
      * Creates a WordMap associating each word with a FileMap containing file names and positions.
+     * Large datasets are merged concurrently by a ParallelIndexBuilder using at most buildParallelism threads,
+     * which results in the same WordMap.
      */
     private void createWordMap() {
+        if (processedFiles.size() >= PARALLEL_BUILD_THRESHOLD && buildParallelism > 1) {
+            this.wordMap = ParallelIndexBuilder.build(processedFiles, fileNames, buildParallelism);
+            return;
+        }
+
         this.wordMap = new WordMap();
 
         // Iterate through each file
@@ -175,33 +338,102 @@ public class Preprocessor {
     /**
      * Performs natural language processing on a given line of text, returning a CoreDocument.
      *
-     * @param line the input line of text to be processed
+     * @param line the input line of text to be processed, already normalized by the TextNormalizer
      *
      * @return the CoreDocument obtained after natural language processing
      */
     private CoreDocument getCoreDocument(String line) {
-        String formattedLine = line.replaceAll("[^’'a-zA-Z0-9]", " ").replaceAll("\\s+", " ").trim();
-
         // Create a document object
-        CoreDocument document = new CoreDocument(formattedLine);
+        CoreDocument document = new CoreDocument(line);
         // Annotate the document
         this.pipeline.annotate(document);
         return document;
     }
 
+    /**
+     * Creates an IndexSnapshot of the structures built by the last call to processDirectory.
+     * <p>
+     * The structures are handed off to the snapshot and the preprocessor forgets them, so that a preprocessor
+     * shared by several corpora does not keep the structures of the last one it processed reachable once that
+     * corpus is dropped.
+     *
+     * @param version the version of the snapshot
+     *
+     * @return the IndexSnapshot of the processed directory
+     *
+     * @throws RuntimeException if no directory was processed since the last snapshot was created
+     */
+    public IndexSnapshot createSnapshot(long version) {
+        if (processedFiles == null) {
+            throw new RuntimeException("No directory processed");
+        }
+        IndexSnapshot snapshot = new IndexSnapshot(version, wordMap, processedFiles, fileNames, vocabulary, completionTrie, bitmapIndex, denseIndex);
+
+        this.wordMap = null;
+        this.vocabulary = null;
+        this.processedFiles = null;
+        this.fileNames = null;
+        this.completionTrie = null;
+        this.bitmapIndex = null;
+        this.denseIndex = null;
+        return snapshot;
+    }
+
     /**
      * Retrieves the WordMap created during the preprocessing.
      *
-     * @return the WordMap associating each word with a FileMap containing file names and positions
+     * @return the WordMap associating each word with a FileMap containing file names and positions, or null if it
+     * was handed off to a snapshot
      */
     public WordMap getWordMap() {
         return wordMap;
     }
 
+    /**
+     * Retrieves the CorpusVocabulary built during the preprocessing.
+     *
+     * @return the CorpusVocabulary identifying the words of the WordMap, or null if it
+     * was handed off to a snapshot
+     */
+    public CorpusVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    /**
+     * Retrieves the CompletionTrie built during the preprocessing.
+     *
+     * @return the CompletionTrie built over the words of the WordMap, or null if it
+     * was handed off to a snapshot
+     */
+    public CompletionTrie getCompletionTrie() {
+        return completionTrie;
+    }
+
+    /**
+     * Retrieves the BitmapIndex built during the preprocessing.
+     *
+     * @return the BitmapIndex associating each word with the set of files containing it, or null if it
+     * was handed off to a snapshot
+     */
+    public BitmapIndex getBitmapIndex() {
+        return bitmapIndex;
+    }
+
+    /**
+     * Retrieves the DenseIndex built during the preprocessing.
+     *
+     * @return the DenseIndex used to score files and bigrams in dense arrays, or null if it
+     * was handed off to a snapshot
+     */
+    public DenseIndex getDenseIndex() {
+        return denseIndex;
+    }
+
     /**
      * Retrieves the list of processed files.
      *
-     * @return the list of processed files containing cleaned and lemmatized content
+     * @return the list of processed files containing cleaned and lemmatized content, or null if it
+     * was handed off to a snapshot
      */
     public ArrayList<String[]> getProcessedFiles() {
         return processedFiles;
@@ -210,7 +442,8 @@ public class Preprocessor {
     /**
      * Retrieves the list of file names processed during preprocessing.
      *
-     * @return the list of file names corresponding to the processed files
+     * @return the list of file names corresponding to the processed files, or null if it
+     * was handed off to a snapshot
      */
     public ArrayList<String> getFileNames() {
         return fileNames;
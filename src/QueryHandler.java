@@ -3,6 +3,8 @@
  */
 import java.io.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The QueryHandler class is responsible for processing queries based on a given WordMap and
@@ -44,64 +46,150 @@ public class QueryHandler {
     }
 
     /**
-     * Processes the queries based on the provided WordMap and the results of preprocessing.
+     * Constructs a QueryHandler with the specified queries and output path.
      *
-     * @param wordMap        the WordMap containing word associations with FileMaps
-     * @param processedFiles the list of processed files containing cleaned and lemmatized content
-     * @param fileNames      the list of file names corresponding to the processed files
+     * @param queries    the list of queries to be processed
+     * @param outputPath the output path for storing the results of query processing
+     */
+    public QueryHandler(ArrayList<String> queries, String outputPath) {
+        this.queriesPath = null;
+        this.outputPath = outputPath;
+        this.queries = queries;
+    }
+
+    /**
+     * Gets the queries to be processed.
+     *
+     * @return the list of queries to be processed
+     */
+    public ArrayList<String> getQueries() {
+        return queries;
+    }
+
+    /**
+     * Processes the queries against the current snapshot of a corpus hosted by a CorpusRegistry.
+     *
+     * @param registry   the CorpusRegistry hosting the corpus
+     * @param corpusName the name of the corpus to query
      */
-    public void processQueries(WordMap wordMap, ArrayList<String[]> processedFiles, ArrayList<String> fileNames) {
+    public void processQueries(CorpusRegistry registry, String corpusName) {
+        processQueries(registry.getSnapshot(corpusName));
+    }
+
+    /**
+     * Processes the queries based on the provided IndexSnapshot. Every query is answered using the same
+     * snapshot, even if a newer one is published while the queries are processed.
+     *
+     * @param snapshot the IndexSnapshot containing the results of preprocessing
+     */
+    public void processQueries(IndexSnapshot snapshot) {
         try (PrintWriter printWriter = new PrintWriter(new BufferedWriter(new FileWriter(outputPath, false)))) {
-            // Iterate over the queries
+            // Iterate over the queries and add the result of each one to the output file
             for (String query : queries) {
-                // Check what type of query it is and process it accordingly
-                QueryType queryType;
-                if (query.contains(QueryType.BIGRAM.getQueryPrefix())) {
-                    query = query.replace(QueryType.BIGRAM.getQueryPrefix(), "");
-                    queryType = QueryType.BIGRAM;
-                } else if (query.contains(QueryType.SEARCH.getQueryPrefix())) {
-                    query = query.replace(QueryType.SEARCH.getQueryPrefix(), "");
-                    queryType = QueryType.SEARCH;
-                } else {
+                printWriter.println(processQuery(query, snapshot));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid file output path");
+        }
+    }
+
+    /**
+     * Gets the type of the given query from its prefix.
+     *
+     * @param query the query
+     *
+     * @return the type of the query
+     *
+     * @throws RuntimeException if the query does not start with a known prefix
+     */
+    public static QueryType getQueryType(String query) {
+        if (query.contains(QueryType.BIGRAM.getQueryPrefix())) {
+            return QueryType.BIGRAM;
+        } else if (query.contains(QueryType.BOOLEAN_SEARCH.getQueryPrefix())) {
+            // Must be checked before SEARCH since its prefix contains the prefix of SEARCH
+            return QueryType.BOOLEAN_SEARCH;
+        } else if (query.contains(QueryType.SEARCH.getQueryPrefix())) {
+            return QueryType.SEARCH;
+        } else if (query.contains(QueryType.AUTOCOMPLETE.getQueryPrefix())) {
+            return QueryType.AUTOCOMPLETE;
+        }
+        throw new RuntimeException("Invalid query format: " + query);
+    }
+
+    /**
+     * Processes a single query based on the provided IndexSnapshot.
+     *
+     * @param query    the query to process
+     * @param snapshot the IndexSnapshot containing the results of preprocessing
+     *
+     * @return the line of output answering the query
+     *
+     * @throws RuntimeException if the query is invalid or cannot be answered
+     */
+    public String processQuery(String query, IndexSnapshot snapshot) {
+        List<String[]> processedFiles = snapshot.getProcessedFiles();
+        CompletionTrie completionTrie = snapshot.getCompletionTrie();
+        BitmapIndex bitmapIndex = snapshot.getBitmapIndex();
+        DenseIndex denseIndex = snapshot.getDenseIndex();
+
+        // Check what type of query it is and remove its prefix
+        QueryType queryType = getQueryType(query);
+        query = query.replace(queryType.getQueryPrefix(), "");
+
+        // Split the query words
+        String[] queryWords = query.split("\\W+");
+
+        switch (queryType) {
+            case BIGRAM:
+                if (queryWords.length != 1) {
                     throw new RuntimeException("Invalid query format: " + query);
                 }
+                // Use the closest word in the processed files using the edit distance
+                String word = correctWord(queryWords[0], processedFiles);
+                // Get the most probable bigram by counting the next words in a dense array
+                String mostProbableBigram = denseIndex.getMostProbableBigram(word);
+                return word + " " + mostProbableBigram;
+            case SEARCH:
+                // Correct each query word
+                String[] searchWords = new String[queryWords.length];
+                for (int i = 0; i < queryWords.length; i++) {
+                    searchWords[i] = correctWord(queryWords[i], processedFiles);
+                }
+                // Get the most relevant file by accumulating the TFIDFs of the query words in a dense array
+                return denseIndex.getMostRelevantFile(searchWords);
+            case BOOLEAN_SEARCH:
+                // Get the files matching the query, correcting each of its words
+                BooleanQuery booleanQuery = new BooleanQuery(query, bitmapIndex, w -> correctWord(w, processedFiles));
+                DocumentBitmap candidates = booleanQuery.getFiles();
+                if (candidates.isEmpty()) {
+                    throw new RuntimeException("No file matches query: " + query);
+                }
 
-                // Split the query words
-                String[] queryWords = query.split("\\W+");
-
-                switch (queryType) {
-                    case BIGRAM:
-                        if (queryWords.length != 1) {
-                            throw new RuntimeException("Invalid query format: " + query);
-                        }
-                        // Use the closest word in the processed files using the edit distance
-                        String word = correctWord(queryWords[0], processedFiles);
-                        // Get the bigrams of the word
-                        CustomHashMap<String, Integer> bigrams = Utils.getBigrams(wordMap, processedFiles, fileNames, word);
-                        // Get the most probable bigram
-                        String mostProbableBigram = Utils.getMostProbableBigram(bigrams);
-                        // Add the most probable bigram to the output file
-                        printWriter.println(word + " " + mostProbableBigram);
-                        break;
-                    case SEARCH:
-                        CustomHashMap<String, Double> tfidfsMerged = new CustomHashMap<>();
-                        // Process each query word
-                        for (String searchWord : queryWords) {
-                            searchWord = correctWord(searchWord, processedFiles);
-                            // Get the TFIDFs of the searchWord
-                            CustomHashMap<String, Double> tfidfs = Utils.getTFIDFs(wordMap, processedFiles, fileNames, searchWord);
-                            // Merge to the TFIDFs of the query words
-                            tfidfs.forEach((k, v) -> tfidfsMerged.merge(k, v, (v1, v2) -> v1 + v2));
-                        }
-                        // Get the most relevant file
-                        String mostRelevantFile = Utils.getMostRelevantFile(tfidfsMerged);
-                        // Add the most relevant file to the output file
-                        printWriter.println(mostRelevantFile);
-                        break;
+                // Only the matching files are scored, using the words which are not negated
+                return denseIndex.getMostRelevantFile(booleanQuery.getScoredWords().toArray(new String[0]), candidates);
+            case AUTOCOMPLETE:
+                if (queryWords.length != 1) {
+                    throw new RuntimeException("Invalid query format: " + query);
                 }
-            }
-        } catch (IOException e) {
-            throw new RuntimeException("Invalid file output path");
+                // The prefix is not corrected since it is not expected to be a complete word
+                ArrayList<Map.Entry<String, String>> completions = completionTrie.complete(queryWords[0]);
+                if (completions.isEmpty()) {
+                    throw new RuntimeException("No completions found for prefix: " + queryWords[0]);
+                }
+                // Join each completion followed by its most probable next word
+                StringBuilder line = new StringBuilder();
+                for (Map.Entry<String, String> completion : completions) {
+                    if (!line.isEmpty()) {
+                        line.append(", ");
+                    }
+                    line.append(completion.getKey());
+                    if (completion.getValue() != null) {
+                        line.append(" ").append(completion.getValue());
+                    }
+                }
+                return line.toString();
+            default:
+                throw new RuntimeException("Invalid query format: " + query);
         }
     }
 
@@ -113,7 +201,7 @@ public class QueryHandler {
      *
      * @return the corrected word based on the closest match
      */
-    public String correctWord(String word, ArrayList<String[]> processedFiles) {
+    public String correctWord(String word, List<String[]> processedFiles) {
         String correctedWord = word;
         int minDistance = Integer.MAX_VALUE;
 
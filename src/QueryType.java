@@ -5,7 +5,7 @@
 
 /**
  * The {@code QueryType} enum represents different types of queries that the QueryHandler class can process.
- * It categorizes queries into specific types, such as BIGRAM or SEARCH, enabling the QueryHandler to apply
+ * It categorizes queries into specific types, such as BIGRAM, SEARCH, BOOLEAN_SEARCH or AUTOCOMPLETE, enabling the QueryHandler to apply
  * the appropriate processing logic for each type.
  * <p>
  * Each enum constant includes a query prefix that helps differentiate and process the respective queries.
@@ -23,6 +23,19 @@ public enum QueryType {
      * This type of query is used for information retrieval and document relevance assessment.
      */
     SEARCH("search "),
+
+    /**
+     * Represents a query type for searching the most relevant file among the files matching a boolean
+     * combination of words, using the AND, OR and NOT operators.
+     * This type of query is used to require or exclude words before the files are ranked by TFIDF.
+     */
+    BOOLEAN_SEARCH("boolean search "),
+
+    /**
+     * Represents a query type for finding the most frequent words starting with a given prefix.
+     * This type of query is used for type-ahead completion over the words of the dataset.
+     */
+    AUTOCOMPLETE("the most frequent completions of "),
     ;
     /**
      * The prefix associated with each query type.
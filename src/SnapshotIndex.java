@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@code SnapshotIndex} class holds the current {@link IndexSnapshot} of a dataset directory and rebuilds
+ * it in the background.
+ * <p>
+ * Readers get the current snapshot without locking and keep using it for as long as they need, even if a newer
+ * one is published in the meantime. Rebuilds run one at a time on a builder thread, which processes the directory
+ * into new structures and then atomically replaces the current snapshot. A replaced snapshot is reclaimed by the
+ * garbage collector once its last reader drops it.
+ */
+public class SnapshotIndex implements AutoCloseable {
+    /**
+     * Maximum number of threads used by a rebuild, which leaves half of the processors to the queries. Thread
+     * priorities are ignored by most platforms, so the priority of the builder thread alone does not do it.
+     */
+    public static final int BUILD_PARALLELISM = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /**
+     * Directory path containing the text files of the dataset.
+     */
+    private final String dir;
+    /**
+     * Preprocessor used to build the snapshots. It is only used by the builder thread.
+     */
+    private final Preprocessor preprocessor;
+    /**
+     * Executor running the rebuilds one at a time.
+     */
+    private final ExecutorService builder;
+    /**
+     * Whether the builder was created by this SnapshotIndex and must be shut down when it is closed.
+     */
+    private final boolean ownsBuilder;
+    /**
+     * Current snapshot, or null if no snapshot was built yet.
+     */
+    private final AtomicReference<IndexSnapshot> current = new AtomicReference<>();
+    /**
+     * Whether the SnapshotIndex was closed, in which case the pending rebuilds are skipped.
+     */
+    private volatile boolean closed;
+    /**
+     * Version of the last built snapshot. It is only used by the builder thread.
+     */
+    private long version;
+
+    /**
+     * Constructs a SnapshotIndex over the specified directory, with its own Preprocessor and builder thread. The
+     * rebuilds use at most BUILD_PARALLELISM threads.
+     *
+     * @param dir the directory path containing the text files of the dataset
+     */
+    public SnapshotIndex(String dir) {
+        this(dir, new Preprocessor(new TermDictionary(), BUILD_PARALLELISM), newBuilder(), true);
+    }
+
+    /**
+     * Constructs a SnapshotIndex over the specified directory, using the given Preprocessor and builder.
+     * The builder must run its tasks one at a time since the Preprocessor is not thread-safe. The Preprocessor
+     * decides how many threads a rebuild uses.
+     *
+     * @param dir          the directory path containing the text files of the dataset
+     * @param preprocessor the Preprocessor used to build the snapshots
+     * @param builder      the single-threaded executor running the rebuilds
+     */
+    public SnapshotIndex(String dir, Preprocessor preprocessor, ExecutorService builder) {
+        this(dir, preprocessor, builder, false);
+    }
+
+    /**
+     * Constructs a SnapshotIndex over the specified directory.
+     *
+     * @param dir          the directory path containing the text files of the dataset
+     * @param preprocessor the Preprocessor used to build the snapshots
+     * @param builder      the single-threaded executor running the rebuilds
+     * @param ownsBuilder  whether the builder must be shut down when the SnapshotIndex is closed
+     */
+    private SnapshotIndex(String dir, Preprocessor preprocessor, ExecutorService builder, boolean ownsBuilder) {
+        this.dir = dir;
+        this.preprocessor = preprocessor;
+        this.builder = builder;
+        this.ownsBuilder = ownsBuilder;
+    }
+
+    /**
+     * Creates a single-threaded executor suitable to run rebuilds. Its thread is a low priority daemon so that it
+     * does not slow down the queries nor keep the application running.
+     *
+     * @return the new executor
+     */
+    public static ExecutorService newBuilder() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-builder");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the current snapshot without locking.
+     *
+     * @return the current snapshot
+     *
+     * @throws RuntimeException if no snapshot was built yet
+     */
+    public IndexSnapshot getSnapshot() {
+        IndexSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            throw new RuntimeException("Index not built yet: " + dir);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Starts a rebuild of the snapshot on the builder thread. The current snapshot stays available until the
+     * rebuild completes, and stays the current one if the rebuild fails.
+     *
+     * @return a Future completed with the new snapshot once it is published, or with the current snapshot if the
+     * SnapshotIndex is closed before the rebuild starts. The Future fails if the SnapshotIndex is closed before
+     * any snapshot was published
+     *
+     * @throws RuntimeException if the SnapshotIndex is closed
+     */
+    public Future<IndexSnapshot> rebuildAsync() {
+        if (closed) {
+            throw new RuntimeException("Index closed: " + dir);
+        }
+        return builder.submit(this::build);
+    }
+
+    /**
+     * Rebuilds the snapshot and waits for the new one to be published.
+     *
+     * @return the new snapshot
+     *
+     * @throws RuntimeException if the rebuild fails or is interrupted
+     */
+    public IndexSnapshot rebuild() {
+        try {
+            return rebuildAsync().get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not build index: " + dir, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building index: " + dir);
+        }
+    }
+
+    /**
+     * Processes the directory into a new snapshot and publishes it. Only called on the builder thread.
+     * <p>
+     * Nothing is built if the SnapshotIndex was closed while the rebuild was queued, so that a removed corpus does
+     * not delay the rebuilds of the other corpora sharing the builder, and nothing is published if it was closed
+     * during the rebuild.
+     *
+     * @return the new snapshot, or the current one if the SnapshotIndex is closed
+     *
+     * @throws RuntimeException if the SnapshotIndex is closed and no snapshot was published
+     */
+    private IndexSnapshot build() {
+        if (closed) {
+            return getClosedSnapshot();
+        }
+        preprocessor.processDirectory(dir);
+        IndexSnapshot snapshot = preprocessor.createSnapshot(++version);
+        if (closed) {
+            return getClosedSnapshot();
+        }
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Gets the current snapshot of a closed SnapshotIndex, which is returned by the rebuilds it skips.
+     *
+     * @return the current snapshot
+     *
+     * @throws RuntimeException if no snapshot was published before the SnapshotIndex was closed
+     */
+    private IndexSnapshot getClosedSnapshot() {
+        IndexSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            throw new RuntimeException("Index closed: " + dir);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Closes the SnapshotIndex so that its pending rebuilds are skipped, and shuts down the builder thread if it was
+     * created by this SnapshotIndex. The current snapshot stays readable.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsBuilder) {
+            builder.shutdown();
+        }
+    }
+}
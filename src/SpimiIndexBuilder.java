@@ -0,0 +1,566 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The {@code SpimiIndexBuilder} class builds an index on disk using a bounded amount of memory
+ * (single-pass in-memory indexing).
+ * <p>
+ * The positions of the words of each added file are accumulated in an in-memory buffer. When the estimated size of
+ * the buffer reaches the memory budget, its words are sorted and written to a temporary run file. Once every file
+ * has been added, the runs are merged into the final index file in sorted order. At most a fixed number of runs,
+ * derived from the memory budget, are read at once; when there are more, groups of consecutive runs are first
+ * merged into larger runs. The buffer is checked after each word, so a large file is split between several
+ * runs; the files of a word still stay in order since the runs are merged in the order they were spilled.
+ * <p>
+ * The buffer and the read buffers of the merged runs fit in the memory budget, and the number of open files does
+ * not depend on the size of the dataset. The memory used outside of the budget is the positions of the file being
+ * added, which grow with the size of that file, and the list of file names, which grows by one name per file.
+ * <p>
+ * The index file starts with the file names, followed by one record per word in lexicographic order. Each record
+ * contains the word and, for each file containing it, the index of the file and the positions of the word.
+ * <p>
+ * Usage: {@code java SpimiIndexBuilder [--option value]...}, where the options are:
+ * <ul>
+ *     <li>{@code --dir} the directory containing the text files to index (default dataset)</li>
+ *     <li>{@code --index} the index file to write (default dataset.index)</li>
+ *     <li>{@code --budget} the memory budget of the in-memory buffer, in bytes (default 67108864)</li>
+ * </ul>
+ * The number of spilled runs, the number of merge passes and the merge time are printed once the index is written.
+ */
+public class SpimiIndexBuilder {
+    /**
+     * Estimated number of bytes used by a new word in the buffer, excluding its characters.
+     */
+    private static final int WORD_OVERHEAD = 96;
+    /**
+     * Estimated number of bytes used by a file entry in the buffer, excluding its positions.
+     */
+    private static final int POSTING_OVERHEAD = 48;
+    /**
+     * Maximum size of the read buffer of each run being merged, in bytes.
+     */
+    private static final int RUN_BUFFER_SIZE = 8192;
+    /**
+     * Minimum size of the read buffer of each run being merged, in bytes. Since at least two runs are merged at
+     * once, the memory budget must be at least twice this size.
+     */
+    private static final int MIN_RUN_BUFFER_SIZE = 512;
+    /**
+     * Maximum number of runs merged at once, which bounds the number of open files whatever the memory budget.
+     */
+    private static final int MAX_MERGE_FAN_IN = 64;
+    /**
+     * Orders the runs by their current word, then by the order in which they were spilled so that the files
+     * of a word stay sorted.
+     */
+    private static final Comparator<RunReader> RUN_ORDER = Comparator.comparing((RunReader run) -> run.word).thenComparingInt(run -> run.index);
+    /**
+     * Maximum estimated size of the in-memory buffer, in bytes.
+     */
+    private final long memoryBudget;
+    /**
+     * Maximum number of runs merged at once, so that their read buffers fit in the memory budget.
+     */
+    private final int mergeFanIn;
+    /**
+     * Size of the read buffer of each run being merged, so that mergeFanIn buffers fit in the memory budget.
+     */
+    private final int runBufferSize;
+    /**
+     * Directory in which the runs are written, or null to use the default temporary directory.
+     */
+    private final File tempDir;
+    /**
+     * List of the names of the added files. The index of a file in this list identifies it in the runs.
+     */
+    private final ArrayList<String> fileNames = new ArrayList<>();
+    /**
+     * Runs spilled to disk which have not been merged yet.
+     */
+    private final ArrayList<File> runs = new ArrayList<>();
+    /**
+     * In-memory buffer associating each word with the files containing it since the last spill.
+     */
+    private CustomHashMap<String, ArrayList<Posting>> buffer = new CustomHashMap<>();
+    /**
+     * Estimated size of the in-memory buffer, in bytes.
+     */
+    private long bufferSize;
+    /**
+     * Number of runs spilled to disk.
+     */
+    private int spilledRuns;
+    /**
+     * Number of passes over the runs done by the merge.
+     */
+    private int mergePasses;
+    /**
+     * Time taken by the merge of the runs, in milliseconds.
+     */
+    private long mergeTime;
+
+    /**
+     * Constructs a SpimiIndexBuilder with the specified memory budget, writing its runs in the default
+     * temporary directory.
+     *
+     * @param memoryBudget the maximum estimated size of the in-memory buffer, in bytes
+     *
+     * @throws RuntimeException if the memory budget cannot hold the read buffers of two runs
+     */
+    public SpimiIndexBuilder(long memoryBudget) {
+        this(memoryBudget, null);
+    }
+
+    /**
+     * Constructs a SpimiIndexBuilder with the specified memory budget and directory for the runs.
+     *
+     * @param memoryBudget the maximum estimated size of the in-memory buffer, in bytes
+     * @param tempDir      the directory in which the runs are written, or null to use the default temporary
+     *                     directory
+     *
+     * @throws RuntimeException if the memory budget cannot hold the read buffers of two runs
+     */
+    public SpimiIndexBuilder(long memoryBudget, File tempDir) {
+        if (memoryBudget < 2L * MIN_RUN_BUFFER_SIZE) {
+            throw new RuntimeException("Memory budget must be at least " + 2 * MIN_RUN_BUFFER_SIZE + " bytes");
+        }
+        this.memoryBudget = memoryBudget;
+        this.mergeFanIn = (int) Math.max(2, Math.min(MAX_MERGE_FAN_IN, memoryBudget / RUN_BUFFER_SIZE));
+        // Small budgets get smaller buffers so that the runs merged at once never exceed the budget
+        this.runBufferSize = (int) Math.min(RUN_BUFFER_SIZE, memoryBudget / this.mergeFanIn);
+        this.tempDir = tempDir;
+    }
+
+    /**
+     * Adds the words of a file to the index, spilling the buffer to disk whenever the memory budget is reached.
+     *
+     * @param fileName    the name of the file
+     * @param fileContent the cleaned and lemmatized words of the file
+     */
+    public void addFile(String fileName, String[] fileContent) {
+        int fileIndex = fileNames.size();
+        fileNames.add(fileName);
+
+        // Get the list of positions for every word of the file
+        CustomHashMap<String, ArrayList<Integer>> positionalizedFileContent = Utils.positionalize(fileContent);
+
+        for (Map.Entry<String, ArrayList<Integer>> entry : positionalizedFileContent.entrySet()) {
+            String word = entry.getKey();
+            ArrayList<Integer> positions = entry.getValue();
+
+            ArrayList<Posting> postings = buffer.get(word);
+            if (postings == null) {
+                postings = new ArrayList<>();
+                buffer.put(word, postings);
+                bufferSize += WORD_OVERHEAD + 2L * word.length();
+            }
+
+            int[] positionsArray = new int[positions.size()];
+            for (int i = 0; i < positionsArray.length; i++) {
+                positionsArray[i] = positions.get(i);
+            }
+            postings.add(new Posting(fileIndex, positionsArray));
+            bufferSize += POSTING_OVERHEAD + 4L * positionsArray.length;
+
+            // The positions of a word in a file are never split, so each word of the file is in a single run
+            if (bufferSize >= memoryBudget) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Writes the in-memory buffer to a new run, sorted by word, and empties the buffer.
+     */
+    private void spill() {
+        try {
+            // Runs are deleted by build, so they are not registered to be deleted on exit
+            File run = File.createTempFile("spimi", ".run", tempDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+                writeBuffer(out);
+            }
+            runs.add(run);
+            spilledRuns++;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write run to disk");
+        }
+
+        buffer = new CustomHashMap<>();
+        bufferSize = 0;
+    }
+
+    /**
+     * Writes the records of the in-memory buffer, sorted by word.
+     *
+     * @param out the stream to which the records are written
+     *
+     * @throws IOException if there is an issue writing the records
+     */
+    private void writeBuffer(DataOutputStream out) throws IOException {
+        ArrayList<String> words = new ArrayList<>(buffer.keySet());
+        words.sort(null);
+
+        for (String word : words) {
+            ArrayList<Posting> postings = buffer.get(word);
+            out.writeBoolean(true);
+            out.writeUTF(word);
+            out.writeInt(postings.size());
+            for (Posting posting : postings) {
+                out.writeInt(posting.fileIndex);
+                out.writeInt(posting.positions.length);
+                for (int position : posting.positions) {
+                    out.writeInt(position);
+                }
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    /**
+     * Writes the final index file, merging the runs spilled to disk with what is left in the buffer.
+     *
+     * @param indexFile the file in which the index is written
+     *
+     * @throws RuntimeException if there is an issue reading the runs or writing the index
+     */
+    public void build(File indexFile) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            out.writeInt(fileNames.size());
+            for (String fileName : fileNames) {
+                out.writeUTF(fileName);
+            }
+
+            // If nothing was spilled, the buffer is already the whole index
+            if (runs.isEmpty()) {
+                writeBuffer(out);
+                buffer = new CustomHashMap<>();
+                bufferSize = 0;
+                return;
+            }
+
+            if (!buffer.isEmpty()) {
+                spill();
+            }
+
+            long start = System.nanoTime();
+            while (runs.size() > mergeFanIn) {
+                mergePass();
+            }
+            merge(runs, out);
+            this.mergePasses++;
+            this.mergeTime = (System.nanoTime() - start) / 1_000_000;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write index file");
+        } finally {
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+        }
+    }
+
+    /**
+     * Merges each group of at most mergeFanIn consecutive runs into a new run. Since the groups are consecutive,
+     * the new runs hold the files in the same order as the runs they replace.
+     *
+     * @throws IOException if there is an issue reading the runs or writing the new runs
+     */
+    private void mergePass() throws IOException {
+        ArrayList<File> mergedRuns = new ArrayList<>();
+        try {
+            for (int i = 0; i < runs.size(); i += mergeFanIn) {
+                File mergedRun = File.createTempFile("spimi", ".run", tempDir);
+                mergedRuns.add(mergedRun);
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mergedRun)))) {
+                    merge(runs.subList(i, Math.min(i + mergeFanIn, runs.size())), out);
+                }
+            }
+        } catch (IOException e) {
+            for (File mergedRun : mergedRuns) {
+                mergedRun.delete();
+            }
+            throw e;
+        }
+
+        for (File run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        runs.addAll(mergedRuns);
+        mergePasses++;
+    }
+
+    /**
+     * Merges the given runs into a single sequence of records sorted by word.
+     *
+     * @param group the runs to merge, in the order they were spilled
+     * @param out   the stream to which the records are written
+     *
+     * @throws IOException if there is an issue reading the runs or writing the records
+     */
+    private void merge(List<File> group, DataOutputStream out) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(group.size(), RUN_ORDER);
+        ArrayList<RunReader> sameWord = new ArrayList<>();
+        try {
+            for (int i = 0; i < group.size(); i++) {
+                RunReader run = new RunReader(group.get(i), i, runBufferSize);
+                if (run.next()) {
+                    queue.add(run);
+                } else {
+                    run.close();
+                }
+            }
+
+            while (!queue.isEmpty()) {
+                // Get every run whose current word is the smallest, in the order they were spilled
+                RunReader first = queue.poll();
+                sameWord.add(first);
+                int postingCount = first.postingCount;
+                while (!queue.isEmpty() && queue.peek().word.equals(first.word)) {
+                    RunReader run = queue.poll();
+                    sameWord.add(run);
+                    postingCount += run.postingCount;
+                }
+
+                out.writeBoolean(true);
+                out.writeUTF(first.word);
+                out.writeInt(postingCount);
+                for (RunReader run : sameWord) {
+                    run.copyPostings(out);
+                    if (run.next()) {
+                        queue.add(run);
+                    } else {
+                        run.close();
+                    }
+                }
+                sameWord.clear();
+            }
+            out.writeBoolean(false);
+        } finally {
+            for (RunReader run : queue) {
+                run.close();
+            }
+            for (RunReader run : sameWord) {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Reads an index file written by a SpimiIndexBuilder into a WordMap, keeping a single instance of each word.
+     * The whole index is loaded in memory, so this is only meant for indices known to fit in the heap.
+     *
+     * @param indexFile      the index file
+     * @param termDictionary the TermDictionary holding the single instance of every word, or null to keep the
+     *                       words as they are read. The words are interned but not acquired, see
+     *                       {@link TermDictionary#intern(String)}
+     *
+     * @return the WordMap associating each word with a FileMap containing file names and positions
+     *
+     * @throws RuntimeException if there is an issue reading the index file
+     */
+    public static WordMap readIndex(File indexFile, TermDictionary termDictionary) {
+        WordMap wordMap = new WordMap();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            String[] fileNames = new String[in.readInt()];
+            for (int i = 0; i < fileNames.length; i++) {
+                fileNames[i] = in.readUTF();
+            }
+
+            while (in.readBoolean()) {
+                String word = in.readUTF();
+                if (termDictionary != null) {
+                    word = termDictionary.intern(word);
+                }
+                int postingCount = in.readInt();
+
+                ArrayList<String> fileNamesList = new ArrayList<>(postingCount);
+                ArrayList<ArrayList<Integer>> positionList = new ArrayList<>(postingCount);
+                for (int i = 0; i < postingCount; i++) {
+                    fileNamesList.add(fileNames[in.readInt()]);
+                    int positionCount = in.readInt();
+                    ArrayList<Integer> positions = new ArrayList<>(positionCount);
+                    for (int j = 0; j < positionCount; j++) {
+                        positions.add(in.readInt());
+                    }
+                    positionList.add(positions);
+                }
+
+                FileMap fileMap = new FileMap();
+                fileMap.put(fileNamesList, positionList);
+                wordMap.put(word, fileMap);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid index file");
+        }
+
+        return wordMap;
+    }
+
+    /**
+     * Gets the number of runs spilled to disk.
+     *
+     * @return the number of spilled runs
+     */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    /**
+     * Gets the number of passes over the runs done by the merge, including the final one.
+     *
+     * @return the number of merge passes, or 0 if nothing was spilled
+     */
+    public int getMergePasses() {
+        return mergePasses;
+    }
+
+    /**
+     * Gets the time taken by the merge of the runs.
+     *
+     * @return the merge time in milliseconds, or 0 if nothing was spilled
+     */
+    public long getMergeTime() {
+        return mergeTime;
+    }
+
+    /**
+     * The main method that indexes a directory into an index file with a bounded amount of memory.
+     *
+     * @param args the options of the build, as described in the documentation of the class
+     *
+     * @throws RuntimeException if an option is invalid or if the index cannot be built
+     */
+    public static void main(String[] args) {
+        CustomHashMap<String, String> options = new CustomHashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length || !List.of("dir", "index", "budget").contains(args[i].substring(2))) {
+                throw new RuntimeException("Invalid option: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        long memoryBudget;
+        try {
+            memoryBudget = Long.parseLong(options.getOrDefault("budget", String.valueOf(64L * 1024 * 1024)));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid option value: " + e.getMessage());
+        }
+
+        SpimiIndexBuilder builder = new Preprocessor().buildIndex(options.getOrDefault("dir", "dataset"), options.getOrDefault("index", "dataset.index"), memoryBudget);
+        System.out.println("Spilled runs: " + builder.getSpilledRuns() + ", merge passes: " + builder.getMergePasses() + ", merge time: " + builder.getMergeTime() + " ms");
+    }
+
+    /**
+     * The positions of a word in a file.
+     */
+    private static class Posting {
+        /**
+         * Index of the file in the list of file names.
+         */
+        private final int fileIndex;
+        /**
+         * Positions of the word in the file.
+         */
+        private final int[] positions;
+
+        /**
+         * Constructs a Posting with the specified file index and positions.
+         *
+         * @param fileIndex the index of the file in the list of file names
+         * @param positions the positions of the word in the file
+         */
+        private Posting(int fileIndex, int[] positions) {
+            this.fileIndex = fileIndex;
+            this.positions = positions;
+        }
+    }
+
+    /**
+     * Sequential reader of the records of a run.
+     */
+    private static class RunReader implements Closeable {
+        /**
+         * Stream from which the records are read.
+         */
+        private final DataInputStream in;
+        /**
+         * Order in which the run was spilled.
+         */
+        private final int index;
+        /**
+         * Word of the current record.
+         */
+        private String word;
+        /**
+         * Number of files of the current record.
+         */
+        private int postingCount;
+
+        /**
+         * Constructs a RunReader over the specified run.
+         *
+         * @param run        the run file
+         * @param index      the order in which the run was spilled
+         * @param bufferSize the size of the read buffer, in bytes
+         *
+         * @throws IOException if the run cannot be opened
+         */
+        private RunReader(File run, int index, int bufferSize) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), bufferSize));
+            this.index = index;
+        }
+
+        /**
+         * Reads the header of the next record.
+         *
+         * @return true if there was a next record, false if the end of the run was reached
+         *
+         * @throws IOException if there is an issue reading the run
+         */
+        private boolean next() throws IOException {
+            if (!in.readBoolean()) {
+                return false;
+            }
+            word = in.readUTF();
+            postingCount = in.readInt();
+            return true;
+        }
+
+        /**
+         * Copies the files and positions of the current record to the output.
+         *
+         * @param out the stream to which the files and positions are written
+         *
+         * @throws IOException if there is an issue reading the run or writing the output
+         */
+        private void copyPostings(DataOutputStream out) throws IOException {
+            for (int i = 0; i < postingCount; i++) {
+                out.writeInt(in.readInt());
+                int positionCount = in.readInt();
+                out.writeInt(positionCount);
+                for (int j = 0; j < positionCount; j++) {
+                    out.writeInt(in.readInt());
+                }
+            }
+        }
+
+        /**
+         * Closes the underlying stream.
+         *
+         * @throws IOException if there is an issue closing the stream
+         */
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@code TermDictionary} class keeps a single instance of every word seen by the {@link Preprocessor} and
+ * identifies it by a global ID.
+ * <p>
+ * The processed files and the WordMap keys of every corpus built with the same dictionary refer to these
+ * instances, so each distinct word is stored once no matter how many times, or in how many corpora, it appears.
+ * Each {@link CorpusVocabulary} holds a reference to the words of its corpus. A word is removed from the dictionary
+ * once no vocabulary refers to it anymore, and its ID is then reused for another word. Words interned while a
+ * directory is processed, but not referenced by the resulting vocabulary, are removed by {@link #removeUnused()}.
+ */
+public class TermDictionary {
+    /**
+     * Map associating each word with its ID. It is read without locking by the queries.
+     */
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * Canonical instance of the word of each ID, or null if the ID is free. It is read without locking by the
+     * queries, and replaced by a larger copy when every ID is used.
+     */
+    private volatile AtomicReferenceArray<String> terms = new AtomicReferenceArray<>(16);
+    /**
+     * Number of IDs given so far, free or not.
+     */
+    private int termCount;
+    /**
+     * IDs which are not used by any word.
+     */
+    private final ArrayList<Integer> freeIds = new ArrayList<>();
+    /**
+     * IDs of the words added by intern since the last call to removeUnused.
+     */
+    private final ArrayList<Integer> internedIds = new ArrayList<>();
+    /**
+     * Number of vocabularies referring to the word of each ID.
+     */
+    private int[] referenceCounts = new int[16];
+
+    /**
+     * Returns the canonical instance of a word, adding the word to the dictionary if it is not in it yet. The word
+     * is not referenced, so it is removed by the next call to removeUnused unless a vocabulary acquires it.
+     *
+     * @param term the word
+     *
+     * @return the canonical instance of the word
+     */
+    public synchronized String intern(String term) {
+        Integer id = ids.get(term);
+        if (id == null) {
+            id = add(term);
+            internedIds.add(id);
+        }
+        return terms.get(id);
+    }
+
+    /**
+     * Adds a reference to each of the given words, adding the words which are not in the dictionary yet.
+     *
+     * @param words the words
+     *
+     * @return the ID of each word
+     */
+    public synchronized int[] acquire(String[] words) {
+        int[] wordIds = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            Integer id = ids.get(words[i]);
+            if (id == null) {
+                id = add(words[i]);
+            }
+            referenceCounts[id]++;
+            wordIds[i] = id;
+        }
+        return wordIds;
+    }
+
+    /**
+     * Removes a reference to each of the given words, removing the words which are no longer referenced.
+     *
+     * @param wordIds the IDs of the words, as returned by acquire
+     */
+    public synchronized void release(int[] wordIds) {
+        for (int id : wordIds) {
+            if (--referenceCounts[id] == 0) {
+                remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the words added by intern which were not acquired since. This is called once a directory has been
+     * processed, so that the words of a failed build, or of one sharing the dictionary at the same time, do not
+     * stay in the dictionary. A word removed while it is still being processed is added again when it is acquired.
+     */
+    public synchronized void removeUnused() {
+        for (int id : internedIds) {
+            if (terms.get(id) != null && referenceCounts[id] == 0) {
+                remove(id);
+            }
+        }
+        internedIds.clear();
+    }
+
+    /**
+     * Gets the ID of a word without locking.
+     *
+     * @param term the word
+     *
+     * @return the ID of the word, or -1 if it is not in the dictionary
+     */
+    public int getId(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the word of an ID without locking. The ID must be referenced by the caller so that it is not reused for
+     * another word.
+     *
+     * @param id the ID of the word
+     *
+     * @return the canonical instance of the word
+     */
+    public String getTerm(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * Gets the number of distinct words in the dictionary.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Adds a word which is not in the dictionary, without any reference to it.
+     *
+     * @param term the word
+     *
+     * @return the ID of the word
+     */
+    private int add(String term) {
+        int id;
+        if (freeIds.isEmpty()) {
+            id = termCount++;
+            if (id == referenceCounts.length) {
+                // Readers keep reading the previous table, whose referenced words do not change, until this one
+                // is published
+                AtomicReferenceArray<String> grownTerms = new AtomicReferenceArray<>(id * 2);
+                for (int i = 0; i < id; i++) {
+                    grownTerms.set(i, terms.get(i));
+                }
+                terms = grownTerms;
+                referenceCounts = Arrays.copyOf(referenceCounts, id * 2);
+            }
+        } else {
+            id = freeIds.remove(freeIds.size() - 1);
+        }
+        terms.set(id, term);
+        ids.put(term, id);
+        return id;
+    }
+
+    /**
+     * Removes the word of an ID and frees the ID.
+     *
+     * @param id the ID of the word
+     */
+    private void remove(int id) {
+        ids.remove(terms.get(id));
+        terms.set(id, null);
+        freeIds.add(id);
+    }
+}
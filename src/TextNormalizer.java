@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The {@code TextNormalizer} class cleans and splits text in a single pass using character class tables
+ * instead of regular expressions.
+ * <p>
+ * Files are read through a {@link FileChannel} and decoded into buffers that are reused from one file to the
+ * next. Since those buffers are shared, an instance of this class must not be used by multiple threads at once.
+ */
+public class TextNormalizer {
+    /**
+     * Default size of the byte and char buffers.
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    /**
+     * Minimum size of the byte and char buffers, which must hold the bytes of any single character (up to 4 in
+     * UTF-8) and both chars of a surrogate pair, or decoding would make no progress.
+     */
+    private static final int MIN_BUFFER_SIZE = 16;
+    /**
+     * Right single quotation mark, which is kept in lines along with the ASCII apostrophe.
+     */
+    private static final char RIGHT_SINGLE_QUOTE = '’';
+    /**
+     * ASCII characters kept in a line. Every other character is a separator.
+     */
+    private static final boolean[] LINE_CHARS = new boolean[128];
+    /**
+     * ASCII characters that form a word. Every other character is a separator.
+     */
+    private static final boolean[] WORD_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            WORD_CHARS[c] = true;
+            WORD_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            WORD_CHARS[c] = true;
+        }
+        System.arraycopy(WORD_CHARS, 0, LINE_CHARS, 0, WORD_CHARS.length);
+        LINE_CHARS['\''] = true;
+    }
+
+    /**
+     * Decoder used to convert the bytes of a file to characters.
+     */
+    private final CharsetDecoder decoder;
+    /**
+     * Reused buffer holding the bytes read from a file.
+     */
+    private final ByteBuffer byteBuffer;
+    /**
+     * Reused buffer holding the decoded characters.
+     */
+    private final CharBuffer charBuffer;
+    /**
+     * Reused builder holding the normalized line being read.
+     */
+    private final StringBuilder line = new StringBuilder();
+    /**
+     * Whether a separator was read since the last character kept in the current line.
+     */
+    private boolean pendingSpace;
+
+    /**
+     * Constructs a TextNormalizer which decodes files using the default charset, like {@link java.io.FileReader}.
+     */
+    public TextNormalizer() {
+        this(Charset.defaultCharset(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a TextNormalizer which decodes files using the specified charset and buffer size.
+     *
+     * @param charset    the charset of the files
+     * @param bufferSize the size of the byte and char buffers
+     *
+     * @throws RuntimeException if the buffer size is too small to hold a character of the charset
+     */
+    public TextNormalizer(Charset charset, int bufferSize) {
+        // A character of the charset may take twice its maximum bytes per char when it is a surrogate pair
+        int minBufferSize = MIN_BUFFER_SIZE;
+        if (charset.canEncode()) {
+            minBufferSize = Math.max(minBufferSize, 2 * (int) Math.ceil(charset.newEncoder().maxBytesPerChar()));
+        }
+        if (bufferSize < minBufferSize) {
+            throw new RuntimeException("Buffer size must be at least " + minBufferSize);
+        }
+        // Malformed input is replaced, like java.io.FileReader does
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.byteBuffer = ByteBuffer.allocateDirect(bufferSize);
+        this.charBuffer = CharBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Reads a file and passes each of its non-empty lines, normalized, to the consumer.
+     * <p>
+     * A normalized line is the same as {@code line.replaceAll("[^’'a-zA-Z0-9]", " ").replaceAll("\\s+", " ").trim()}
+     * where the lines are split like {@link java.io.BufferedReader#readLine()} does.
+     *
+     * @param file     the file to read
+     * @param consumer the consumer of the normalized lines
+     *
+     * @throws IOException if there is an issue reading the file
+     */
+    public void readLines(File file, Consumer<String> consumer) throws IOException {
+        line.setLength(0);
+        pendingSpace = false;
+        decoder.reset();
+        byteBuffer.clear();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = channel.read(byteBuffer) == -1;
+                byteBuffer.flip();
+
+                // Decode as much as possible, leaving incomplete characters in the byte buffer
+                CoderResult result;
+                do {
+                    result = decoder.decode(byteBuffer, charBuffer, endOfInput);
+                    normalizeChars(consumer);
+                } while (result.isOverflow());
+
+                byteBuffer.compact();
+            }
+
+            while (decoder.flush(charBuffer).isOverflow()) {
+                normalizeChars(consumer);
+            }
+            normalizeChars(consumer);
+        }
+
+        // The last line may not end with a line terminator
+        emitLine(consumer);
+    }
+
+    /**
+     * Normalizes the decoded characters into the current line and empties the char buffer.
+     *
+     * @param consumer the consumer of the normalized lines
+     */
+    private void normalizeChars(Consumer<String> consumer) {
+        charBuffer.flip();
+        while (charBuffer.hasRemaining()) {
+            char c = charBuffer.get();
+            if (c == '\n' || c == '\r') {
+                // Since empty lines are skipped, "\r\n" does not need to be handled as a single terminator
+                emitLine(consumer);
+            } else if (c < 128 ? LINE_CHARS[c] : c == RIGHT_SINGLE_QUOTE) {
+                if (pendingSpace && !line.isEmpty()) {
+                    line.append(' ');
+                }
+                pendingSpace = false;
+                line.append(c);
+            } else {
+                pendingSpace = true;
+            }
+        }
+        charBuffer.clear();
+    }
+
+    /**
+     * Passes the current line to the consumer if it is not empty and starts a new line.
+     *
+     * @param consumer the consumer of the normalized lines
+     */
+    private void emitLine(Consumer<String> consumer) {
+        if (!line.isEmpty()) {
+            consumer.accept(line.toString());
+        }
+        line.setLength(0);
+        pendingSpace = false;
+    }
+
+    /**
+     * Splits a text into words made of ASCII letters and digits and adds them to the list. Every other character
+     * is a separator.
+     * <p>
+     * Only the words are allocated. If the whole text is a word, the text itself is added.
+     *
+     * @param text  the text to split
+     * @param words the list to which the words are added
+     */
+    public static void tokenize(String text, ArrayList<String> words) {
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && WORD_CHARS[c]) {
+                if (start == -1) {
+                    start = i;
+                }
+            } else if (start != -1) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start != -1) {
+            words.add(text.substring(start));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023. Etienne Collin #2038029, Emiliano Aviles #20178127
+ */
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code VectorKernels} class implements the operations of {@link DenseScorer} with the JDK Vector API.
+ * <p>
+ * This class must only be used through DenseScorer, which checks that the {@code jdk.incubator.vector} module is
+ * available before loading it. Every lane performs the same operations in the same order as the scalar
+ * implementation, so both give exactly the same results.
+ */
+class VectorKernels {
+    /**
+     * Preferred species for vectors of doubles on this platform.
+     */
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * Preferred species for vectors of ints on this platform.
+     */
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Adds {@code occurrences[i] / lengths[i] * idf} to {@code scores[i]} for every i.
+     *
+     * @param scores      the accumulated scores
+     * @param occurrences the number of occurrences of a word in each file
+     * @param lengths     the number of words of each file
+     * @param idf         the inverse document frequency of the word
+     */
+    static void accumulate(double[] scores, double[] occurrences, double[] lengths, double idf) {
+        int i = 0;
+        for (int bound = DOUBLES.loopBound(scores.length); i < bound; i += DOUBLES.length()) {
+            DoubleVector tf = DoubleVector.fromArray(DOUBLES, occurrences, i).div(DoubleVector.fromArray(DOUBLES, lengths, i));
+            DoubleVector.fromArray(DOUBLES, scores, i).add(tf.mul(idf)).intoArray(scores, i);
+        }
+        for (; i < scores.length; i++) {
+            scores[i] += occurrences[i] / lengths[i] * idf;
+        }
+    }
+
+    /**
+     * Finds the smallest rank among the elements holding the highest value.
+     *
+     * @param values the values
+     * @param ranks  the rank of each element
+     *
+     * @return the smallest rank among the elements holding the highest value
+     */
+    static double argmaxRank(double[] values, double[] ranks) {
+        // Find the highest value
+        DoubleVector maxVector = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        int bound = DOUBLES.loopBound(values.length);
+        for (; i < bound; i += DOUBLES.length()) {
+            maxVector = maxVector.max(DoubleVector.fromArray(DOUBLES, values, i));
+        }
+        double max = maxVector.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+
+        // Find the smallest rank among the lanes holding the highest value
+        DoubleVector minRankVector = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+        for (i = 0; i < bound; i += DOUBLES.length()) {
+            VectorMask<Double> isMax = DoubleVector.fromArray(DOUBLES, values, i).eq(max);
+            minRankVector = minRankVector.lanewise(VectorOperators.MIN, DoubleVector.fromArray(DOUBLES, ranks, i), isMax);
+        }
+        double minRank = minRankVector.reduceLanes(VectorOperators.MIN);
+        for (; i < values.length; i++) {
+            if (values[i] == max) {
+                minRank = Math.min(minRank, ranks[i]);
+            }
+        }
+        return minRank;
+    }
+
+    /**
+     * Finds the first element holding the highest value.
+     *
+     * @param values the values
+     *
+     * @return the index of the first element holding the highest value
+     */
+    static int argmax(int[] values) {
+        // Find the highest value
+        IntVector maxVector = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+        int i = 0;
+        int bound = INTS.loopBound(values.length);
+        for (; i < bound; i += INTS.length()) {
+            maxVector = maxVector.max(IntVector.fromArray(INTS, values, i));
+        }
+        int max = maxVector.reduceLanes(VectorOperators.MAX);
+        for (; i < values.length; i++) {
+            max = Math.max(max, values[i]);
+        }
+
+        // Find the first lane holding the highest value
+        for (i = 0; i < bound; i += INTS.length()) {
+            VectorMask<Integer> isMax = IntVector.fromArray(INTS, values, i).eq(max);
+            if (isMax.anyTrue()) {
+                return i + isMax.firstTrue();
+            }
+        }
+        for (; i < values.length; i++) {
+            if (values[i] == max) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}